@@ -0,0 +1,193 @@
+package org.agh;
+
+import lombok.Getter;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * The {@code CohortLock} class is a hierarchical writer lock layered over the
+ * global fair {@link Semaphore} of a {@link Library}.
+ * <p>
+ * Writers are split into groups (cohorts) by an affinity function. Each group
+ * has its own local queue. The first writer of a group takes all global
+ * permits; when it leaves while another writer of the same group is queued
+ * locally, exclusive access is handed over without touching the global
+ * semaphore. After {@code maxLocalHandoffs} consecutive local handoffs the
+ * global permits are released, so readers and other groups queued on the
+ * semaphore get their turn.
+ * </p>
+ *
+ * <p>
+ * Waiting is interruptible everywhere. Queued writers are counted under the
+ * local lock and access is only handed to a counted writer; a writer that
+ * gives up waiting passes the handoff on or, as the last one, releases the
+ * global permits, so they are never stranded in an empty cohort.
+ * </p>
+ *
+ * <p>
+ * Keeping consecutive writers within one group keeps the protected state in
+ * the caches of that group, for example one socket of a multi-socket host.
+ * </p>
+ */
+public class CohortLock {
+
+    private final Semaphore global;
+    private final int permits;
+    private final int maxLocalHandoffs;
+    private final ToIntFunction<Thread> affinity;
+    private final Cohort[] cohorts;
+    @Getter
+    private final LongAdder globalAcquisitions = new LongAdder();
+    @Getter
+    private final LongAdder localHandoffs = new LongAdder();
+    private Cohort owner;
+
+    /**
+     * Creates a new {@code CohortLock}.
+     *
+     * @param global           the global semaphore shared with readers
+     * @param permits          number of permits giving exclusive access
+     * @param groups           number of cohorts
+     * @param maxLocalHandoffs maximal number of consecutive local handoffs
+     * @param affinity         maps a thread to its cohort; taken modulo {@code groups}
+     */
+    public CohortLock(Semaphore global, int permits, int groups, int maxLocalHandoffs,
+                      ToIntFunction<Thread> affinity) {
+        if (groups < 1 || maxLocalHandoffs < 0) {
+            throw new IllegalArgumentException("At least one group and a non-negative handoff bound are required");
+        }
+        this.global = global;
+        this.permits = permits;
+        this.maxLocalHandoffs = maxLocalHandoffs;
+        this.affinity = affinity;
+        cohorts = new Cohort[groups];
+        for (int i = 0; i < groups; i++) {
+            cohorts[i] = new Cohort();
+        }
+    }
+
+    /**
+     * Acquires exclusive access, either handed over by a writer of the same
+     * cohort or taken from the global semaphore.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        Cohort cohort = cohorts[Math.floorMod(affinity.applyAsInt(Thread.currentThread()), cohorts.length)];
+        cohort.local.lockInterruptibly();
+        try {
+            cohort.waiting++;
+            try {
+                while (cohort.busy) {
+                    cohort.turn.await();
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            } catch (InterruptedException e) {
+                cohort.waiting--;
+                passOn(cohort);
+                throw e;
+            }
+            cohort.waiting--;
+            cohort.busy = true;
+            if (cohort.globalHeld) {
+                localHandoffs.increment();
+                owner = cohort;
+                return;
+            }
+        } finally {
+            cohort.local.unlock();
+        }
+
+        try {
+            global.acquire(permits);
+        } catch (InterruptedException e) {
+            cohort.local.lock();
+            try {
+                cohort.busy = false;
+                passOn(cohort);
+            } finally {
+                cohort.local.unlock();
+            }
+            throw e;
+        }
+        cohort.local.lock();
+        try {
+            cohort.globalHeld = true;
+            cohort.handoffs = 0;
+        } finally {
+            cohort.local.unlock();
+        }
+        globalAcquisitions.increment();
+        owner = cohort;
+    }
+
+    /**
+     * Releases exclusive access. It is handed to the next writer of the same
+     * cohort if one is queued and the handoff bound is not reached; otherwise
+     * the global permits are released.
+     * <p>
+     * Must be called by the thread that acquired the lock.
+     * </p>
+     */
+    public void release() {
+        Cohort cohort = owner;
+        owner = null;
+        cohort.local.lock();
+        try {
+            cohort.busy = false;
+            if (cohort.waiting > 0 && cohort.handoffs < maxLocalHandoffs) {
+                cohort.handoffs++;
+            } else {
+                releaseGlobal(cohort);
+            }
+            passOn(cohort);
+        } finally {
+            cohort.local.unlock();
+        }
+    }
+
+    /**
+     * Wakes the next queued writer of a free cohort, or gives the global
+     * permits back if nobody is queued any more. Must be called with the
+     * local lock held.
+     */
+    private void passOn(Cohort cohort) {
+        if (cohort.busy) {
+            return;
+        }
+        if (cohort.waiting > 0) {
+            cohort.turn.signal();
+        } else {
+            releaseGlobal(cohort);
+        }
+    }
+
+    /**
+     * Gives the global permits back if the cohort holds them. Must be called
+     * with the local lock held.
+     */
+    private void releaseGlobal(Cohort cohort) {
+        if (cohort.globalHeld) {
+            cohort.globalHeld = false;
+            global.release(permits);
+        }
+    }
+
+    /**
+     * Local queue of one group. Its fields are guarded by the local lock.
+     */
+    private static final class Cohort {
+        private final ReentrantLock local = new ReentrantLock(true);
+        private final Condition turn = local.newCondition();
+        private boolean busy;
+        private boolean globalHeld;
+        private int waiting;
+        private int handoffs;
+    }
+}
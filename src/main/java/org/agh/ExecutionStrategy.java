@@ -0,0 +1,70 @@
+package org.agh;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The {@code ExecutionStrategy} enum lists the execution models that
+ * {@link Library#run(int, int, int, ExecutionStrategy)} can be compared on.
+ * <p>
+ * Each strategy creates a fresh executor for one run. Reader and writer tasks
+ * never finish on their own, so a {@link #isBounded() bounded} pool is given
+ * one operation at a time instead and multiplexes every participant over its
+ * threads. Virtual threads on a custom scheduler are not part of the public
+ * API of our Java release; the default virtual thread scheduler can be
+ * resized with the {@code jdk.virtualThreadScheduler.parallelism} system
+ * property instead.
+ * </p>
+ */
+public enum ExecutionStrategy {
+
+    /**
+     * One virtual thread per participant, the default of {@link Library#run}.
+     */
+    VIRTUAL {
+        @Override
+        public ExecutorService newExecutor() {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().factory());
+        }
+    },
+
+    /**
+     * One platform thread per participant.
+     */
+    PLATFORM {
+        @Override
+        public ExecutorService newExecutor() {
+            return Executors.newThreadPerTaskExecutor(Thread.ofPlatform().factory());
+        }
+    },
+
+    /**
+     * A {@link ForkJoinPool} bounded to one worker per available processor.
+     */
+    FORK_JOIN {
+        @Override
+        public ExecutorService newExecutor() {
+            return new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+
+        @Override
+        public boolean isBounded() {
+            return true;
+        }
+    };
+
+    /**
+     * Creates a new executor running the participants of one run.
+     *
+     * @return the executor
+     */
+    public abstract ExecutorService newExecutor();
+
+    /**
+     * @return {@code true} if the executor has fewer threads than a run has participants
+     */
+    public boolean isBounded() {
+        return false;
+    }
+}
@@ -4,12 +4,25 @@ import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
 
 /**
  * The {@code Library} class represents a shared resource accessed concurrently
@@ -24,29 +37,70 @@ import java.util.concurrent.locks.ReentrantLock;
  * The semaphore controls the maximum number of concurrent readers and enforces
  * fairness, while the lock protects shared state such as counters and queues.
  * </p>
+ *
+ * <p>
+ * Every change of the counters is additionally published through a sequence
+ * lock, so monitoring code can read a consistent {@link Snapshot} without
+ * taking the lock.
+ * </p>
  */
 @Getter
-public class Library {
+public class Library implements LibraryAccess {
+
+    /**
+     * Default number of capacity units: the reader limit and the amount a writer takes.
+     */
+    public static final int DEFAULT_CAPACITY = 5;
+
+    private static final int DRAIN_PERMITS = Integer.MAX_VALUE / 2;
 
     private static final Logger logger = LoggerFactory.getLogger(Library.class);
     private final ReentrantLock lock = new ReentrantLock();
     private final Semaphore semaphore;
+    private final int capacity;
     private int waitingReaders = 0;
     private int waitingWriters = 0;
     private int activeReaders = 0;
     private int activeWriters = 0;
+    private int waitingHeavyReaders = 0;
+    private int bypasses = 0;
+    private int maxReaderBypass;
     private final List<String> waitingQueue = new LinkedList<>();
     private final List<String> inLibrary = new LinkedList<>();
+    private TraceRecorder traceRecorder;
+    private CohortLock cohortLock;
+    private LibraryMetrics metrics;
+    private boolean detailedState = true;
+    private volatile long version = 0;
 
     /**
      * Creates a new {@code Library} instance.
      * <p>
-     * The semaphore is initialized with 5 permits and fairness enabled,
-     * allowing up to 5 concurrent readers or a single writer.
+     * The semaphore is initialized with {@value #DEFAULT_CAPACITY} permits and
+     * fairness enabled, allowing up to {@value #DEFAULT_CAPACITY} concurrent
+     * readers or a single writer.
      * </p>
      */
     public Library() {
-        semaphore = new Semaphore(5, true);
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new {@code Library} instance with the given capacity.
+     * <p>
+     * The capacity is the number of semaphore permits. A reader takes as many
+     * permits as its weight and a writer takes all of them.
+     * </p>
+     *
+     * @param capacity number of capacity units, at least 1
+     */
+    public Library(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        maxReaderBypass = capacity;
+        semaphore = new Semaphore(capacity, true);
     }
 
     /**
@@ -54,102 +108,218 @@ public class Library {
      * <p>
      * The calling thread is added to the waiting queue and waits until a
      * semaphore permit becomes available. Once acquired, the reader enters
-     * the library and updates the internal state.
+     * the library and updates the internal state. If interrupted while
+     * waiting, the thread is removed from the waiting queue again.
      * </p>
      *
      * @throws InterruptedException if the thread is interrupted while waiting
      *                              to acquire the semaphore
      */
+    @Override
     public void startReading() throws InterruptedException {
+        startReading(1);
+    }
+
+    /**
+     * Starts a weighted reading operation that consumes {@code weight}
+     * capacity units.
+     * <p>
+     * Readers are admitted in arrival order by the fair semaphore, with one
+     * bounded exception: while a heavy reader (weight above 1) waits and no
+     * writer does, a light reader arriving after it may take a free unit
+     * right away instead of queueing behind it. At most
+     * {@link #setReaderBypass} light readers bypass a waiting heavy reader;
+     * later ones queue in order, so units are freed for the heavy reader and
+     * a stream of light readers cannot keep it or a writer out.
+     * </p>
+     *
+     * @param weight number of capacity units, between 1 and the capacity
+     * @throws InterruptedException if the thread is interrupted while waiting
+     *                              to acquire the semaphore
+     */
+    public void startReading(int weight) throws InterruptedException {
+        checkWeight(weight);
         String currentThreadName = Thread.currentThread().getName();
+        long waitStart = metrics != null ? System.nanoTime() : 0;
+        boolean heavy = weight > 1;
+        boolean bypassed = false;
         lock.lock();
         try {
+            beginUpdate();
             waitingReaders++;
-            printStatus(currentThreadName + " WAIT");
-            waitingQueue.addFirst(currentThreadName);
+            endUpdate();
+            printStatus(currentThreadName, "WAIT");
+            if (detailedState) {
+                waitingQueue.addFirst(currentThreadName);
+            }
+            trace(TraceRecorder.READER, TraceRecorder.WAIT);
+            if (heavy) {
+                waitingHeavyReaders++;
+            } else if (waitingHeavyReaders > 0 && waitingWriters == 0 && bypasses < maxReaderBypass
+                    && semaphore.tryAcquire()) {
+                bypasses++;
+                bypassed = true;
+            }
         } finally {
             lock.unlock();
         }
-        semaphore.acquire();
+        if (!bypassed) {
+            try {
+                semaphore.acquire(weight);
+            } catch (InterruptedException e) {
+                abandonWaiting(TraceRecorder.READER, heavy);
+                throw e;
+            }
+        }
 
         lock.lock();
         try {
-            waitingQueue.removeLast();
-            inLibrary.add(currentThreadName);
+            beginUpdate();
             waitingReaders--;
             activeReaders++;
-            printStatus(currentThreadName + " ENTER");
+            endUpdate();
+            if (heavy) {
+                heavyReaderLeftQueue();
+            }
+            if (detailedState) {
+                waitingQueue.removeLast();
+                inLibrary.add(currentThreadName);
+            }
+            printStatus(currentThreadName, "ENTER");
+            trace(TraceRecorder.READER, TraceRecorder.ENTER);
         } finally {
             lock.unlock();
         }
+        if (metrics != null) {
+            metrics.entered(TraceRecorder.READER, waitStart);
+        }
     }
 
     /**
      * Starts a writing operation.
      * <p>
      * The calling thread waits until it can acquire all semaphore permits,
-     * guaranteeing exclusive access to the library.
+     * guaranteeing exclusive access to the library. If interrupted while
+     * waiting, the thread is removed from the waiting queue again. In cohort
+     * mode the permits may instead be handed over by the previous writer of
+     * the same group, see {@link #enableCohortMode}.
      * </p>
      *
      * @throws InterruptedException if the thread is interrupted while waiting
      *                              to acquire the semaphore
      */
+    @Override
     public void startWriting() throws InterruptedException {
         String currentThreadName = Thread.currentThread().getName();
+        long waitStart = metrics != null ? System.nanoTime() : 0;
         lock.lock();
         try {
+            beginUpdate();
             waitingWriters++;
-            printStatus(currentThreadName + " WAIT");
-            waitingQueue.addFirst(currentThreadName);
+            endUpdate();
+            printStatus(currentThreadName, "WAIT");
+            if (detailedState) {
+                waitingQueue.addFirst(currentThreadName);
+            }
+            trace(TraceRecorder.WRITER, TraceRecorder.WAIT);
         } finally {
             lock.unlock();
         }
-        semaphore.acquire(5);
+        try {
+            if (cohortLock != null) {
+                cohortLock.acquire();
+            } else {
+                semaphore.acquire(capacity);
+            }
+        } catch (InterruptedException e) {
+            abandonWaiting(TraceRecorder.WRITER, false);
+            throw e;
+        }
 
         lock.lock();
         try {
-            waitingQueue.removeLast();
-            inLibrary.addFirst(currentThreadName);
+            beginUpdate();
             waitingWriters--;
             activeWriters++;
-            printStatus(currentThreadName + " ENTER");
+            endUpdate();
+            if (detailedState) {
+                waitingQueue.removeLast();
+                inLibrary.addFirst(currentThreadName);
+            }
+            printStatus(currentThreadName, "ENTER");
+            trace(TraceRecorder.WRITER, TraceRecorder.ENTER);
         } finally {
             lock.unlock();
         }
+        if (metrics != null) {
+            metrics.entered(TraceRecorder.WRITER, waitStart);
+        }
     }
 
     /**
      * Ends a reading operation and releases the semaphore permit.
      */
+    @Override
     public void stopReading() {
+        stopReading(1);
+    }
+
+    /**
+     * Ends a weighted reading operation and releases its capacity units.
+     *
+     * @param weight the weight passed to {@link #startReading(int)}
+     */
+    public void stopReading(int weight) {
+        checkWeight(weight);
         String currentThreadName = Thread.currentThread().getName();
+        if (metrics != null) {
+            metrics.left(TraceRecorder.READER);
+        }
 
         lock.lock();
         try {
-            inLibrary.removeLast();
+            beginUpdate();
             activeReaders--;
-            printStatus(currentThreadName + " LEAVE");
+            endUpdate();
+            if (detailedState) {
+                inLibrary.removeLast();
+            }
+            printStatus(currentThreadName, "LEAVE");
+            trace(TraceRecorder.READER, TraceRecorder.LEAVE);
         } finally {
             lock.unlock();
         }
 
-        semaphore.release();
+        semaphore.release(weight);
     }
 
     /**
      * Ends a writing operation and releases all semaphore permits.
      */
+    @Override
     public void stopWriting() {
         String currentThreadName = Thread.currentThread().getName();
+        if (metrics != null) {
+            metrics.left(TraceRecorder.WRITER);
+        }
         lock.lock();
         try {
-            inLibrary.removeLast();
+            beginUpdate();
             activeWriters--;
-            printStatus(currentThreadName + " LEAVE");
+            endUpdate();
+            if (detailedState) {
+                inLibrary.removeLast();
+            }
+            printStatus(currentThreadName, "LEAVE");
+            trace(TraceRecorder.WRITER, TraceRecorder.LEAVE);
         } finally {
             lock.unlock();
         }
-        semaphore.release(5);
+        if (cohortLock != null) {
+            cohortLock.release();
+        } else {
+            semaphore.release(capacity);
+        }
     }
 
     /**
@@ -163,42 +333,396 @@ public class Library {
      * @param sleepTime       sleep time for each reader and writer task
      */
     public void run(int numberOfWriters, int numberOfReaders, int sleepTime) {
-        ArrayList<Thread> listOfPeople = new ArrayList<>();
+        run(numberOfWriters, numberOfReaders, sleepTime, ExecutionStrategy.VIRTUAL.newExecutor());
+    }
+
+    /**
+     * Starts the simulation on the given executor.
+     * <p>
+     * Reader and writer tasks are submitted in randomized order and name the
+     * thread running them. Tasks are joined in completion order, so the first
+     * failure is noticed even while other tasks are still running. The call
+     * returns once every task has finished, a task fails or the calling
+     * thread is interrupted; in all cases the executor is shut down,
+     * interrupting the remaining tasks in the latter two.
+     * </p>
+     *
+     * <p>
+     * Every task runs its participant until interrupted, so the executor
+     * needs a thread per participant; see
+     * {@link #run(int, int, int, ExecutionStrategy)} for bounded pools.
+     * </p>
+     *
+     * @param numberOfWriters number of writer tasks
+     * @param numberOfReaders number of reader tasks
+     * @param sleepTime       sleep time for each reader and writer task
+     * @param executor        executor with a thread per task, see {@link ExecutionStrategy}
+     */
+    public void run(int numberOfWriters, int numberOfReaders, int sleepTime, ExecutorService executor) {
+        List<Task> tasks = new ArrayList<>();
         for (int i = 0; i < numberOfWriters; i++) {
             Writer writerTask = new Writer(this, sleepTime);
-            Thread vThread = Thread.ofVirtual().name("WRITER " + (i + 1)).unstarted(writerTask);
-            listOfPeople.add(vThread);
+            tasks.add(participant("WRITER " + (i + 1), writerTask));
+        }
+        for (int i = 0; i < numberOfReaders; i++) {
+            Reader readerTask = new Reader(this, sleepTime);
+            tasks.add(participant("READER " + (i + 1), readerTask));
+        }
+        supervise(tasks, executor);
+    }
 
+    /**
+     * Starts the simulation with the given execution strategy.
+     * <p>
+     * Strategies with a thread per participant run as in
+     * {@link #run(int, int, int, ExecutorService)}. A
+     * {@link ExecutionStrategy#isBounded() bounded} pool has fewer threads
+     * than participants, so every task performs a single operation of one
+     * participant and the calling thread submits the next operation once it
+     * has completed. Resubmitted operations join the end of the shared
+     * submission queue of the pool, so its threads serve all participants
+     * in turn and every strategy runs the same workload.
+     * </p>
+     *
+     * @param numberOfWriters number of writers
+     * @param numberOfReaders number of readers
+     * @param sleepTime       sleep time for each reader and writer operation
+     * @param strategy        execution model of the run
+     */
+    public void run(int numberOfWriters, int numberOfReaders, int sleepTime, ExecutionStrategy strategy) {
+        if (!strategy.isBounded()) {
+            run(numberOfWriters, numberOfReaders, sleepTime, strategy.newExecutor());
+            return;
+        }
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < numberOfWriters; i++) {
+            Writer writerTask = new Writer(this, sleepTime);
+            tasks.add(operation("WRITER " + (i + 1), writerTask::operate));
         }
         for (int i = 0; i < numberOfReaders; i++) {
             Reader readerTask = new Reader(this, sleepTime);
-            Thread vThread = Thread.ofVirtual().name("READER " + (i + 1)).unstarted(readerTask);
-            listOfPeople.add(vThread);
+            tasks.add(operation("READER " + (i + 1), readerTask::operate));
         }
-        Collections.shuffle(listOfPeople);
-        for (Thread t : listOfPeople) {
-            t.start();
+        supervise(tasks, strategy.newExecutor());
+    }
+
+    /**
+     * Submits the tasks in randomized order and joins them in completion
+     * order. A task returns the next task to submit, or {@code null} once its
+     * participant is done.
+     *
+     * @param tasks    the first task of every participant
+     * @param executor executor running the tasks; shut down on return
+     */
+    private void supervise(List<Task> tasks, ExecutorService executor) {
+        Collections.shuffle(tasks);
+        CompletionService<Task> completion = new ExecutorCompletionService<>(executor);
+        for (Task task : tasks) {
+            completion.submit(task);
+        }
+
+        try {
+            int running = tasks.size();
+            while (running > 0) {
+                Task next = completion.take().get();
+                if (next == null) {
+                    running--;
+                } else {
+                    completion.submit(next);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Main thread interrupted", e);
+            executor.shutdownNow();
+        } catch (ExecutionException e) {
+            logger.error("Reader or writer failed", e.getCause());
+            executor.shutdownNow();
+        } finally {
+            executor.shutdown();
         }
+    }
+
+    /**
+     * A piece of work of one participant. It returns the next piece to
+     * submit, or {@code null} once the participant is done.
+     */
+    private interface Task extends Callable<Task> {
+    }
 
-        for (Thread t : listOfPeople) {
+    /**
+     * Wraps a participant running until interrupted into a single task.
+     *
+     * @param name        thread name
+     * @param participant reader or writer
+     * @return the task
+     */
+    private static Task participant(String name, Runnable participant) {
+        return () -> named(name, () -> {
+            participant.run();
+            return null;
+        });
+    }
+
+    /**
+     * Wraps a single operation into a task returning itself for as long as
+     * the participant keeps going.
+     *
+     * @param name      thread name
+     * @param operation one operation, returning {@code false} when the participant stops
+     * @return the task
+     */
+    private static Task operation(String name, Callable<Boolean> operation) {
+        return new Task() {
+            @Override
+            public Task call() throws Exception {
+                return named(name, operation) ? this : null;
+            }
+        };
+    }
+
+    /**
+     * Runs a task under the given thread name, restoring the previous name
+     * afterwards since pool threads are shared.
+     *
+     * @param name thread name
+     * @param task task to run
+     * @return the result of the task
+     */
+    private static <V> V named(String name, Callable<V> task) throws Exception {
+        Thread thread = Thread.currentThread();
+        String previousName = thread.getName();
+        thread.setName(name);
+        try {
+            return task.call();
+        } finally {
+            thread.setName(previousName);
+        }
+    }
+
+    /**
+     * Result of a {@link #runAtScale} run.
+     *
+     * @param participants           number of readers and writers
+     * @param startupMillis          time to launch every participant
+     * @param shutdownMillis         time to stop and join every participant
+     * @param bytesPerParticipant    heap growth per participant once all were
+     *                               parked in or inside the library
+     * @param completedOperations    finished reading and writing operations
+     */
+    public record ScaleReport(int participants, double startupMillis, double shutdownMillis,
+                              long bytesPerParticipant, long completedOperations) {
+    }
+
+    /**
+     * Runs a large number of readers and writers for a fixed time.
+     * <p>
+     * Unlike {@link #run}, participants are unnamed virtual threads owned by a
+     * thread-per-task executor, the detailed queue state and status printing
+     * are switched off, and participants never log, so the hot path neither
+     * allocates names nor logs. The detailed state is restored when the run
+     * ends.
+     * </p>
+     *
+     * <p>
+     * The heap is sampled once every participant is waiting or inside the
+     * library, so its stack and queue node are included, or when the run
+     * time is over if that never happens.
+     * </p>
+     *
+     * <p>
+     * Interrupting a million threads parked in the semaphore queue would
+     * cancel its nodes one by one, which is quadratic in the queue length.
+     * Shutdown therefore drains the library instead: after the stop flag is
+     * raised, a flood of extra permits admits every waiter at once, each
+     * participant leaves immediately, and the flood is taken back once the
+     * executor has joined them all. Exclusivity is not guaranteed while the
+     * library drains. An interrupt of the calling thread ends the run early
+     * and is restored only after the executor is closed, because closing it
+     * while interrupted would interrupt every participant after all. The
+     * flood is taken back and the detailed state restored even if launching
+     * the participants fails.
+     * </p>
+     *
+     * @param numberOfWriters number of writer threads
+     * @param numberOfReaders number of reader threads
+     * @param sleepTime       time each participant stays inside the library
+     * @param durationMillis  how long the participants run
+     * @return startup, shutdown and memory figures of the run
+     */
+    public ScaleReport runAtScale(int numberOfWriters, int numberOfReaders, int sleepTime, long durationMillis) {
+        boolean previousDetailedState = detailedState;
+        setDetailedState(false);
+        int participants = numberOfWriters + numberOfReaders;
+        int holdTime = Math.min(Math.abs(sleepTime), 3000);
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder completed = new LongAdder();
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        long startupBegin = System.nanoTime();
+        long startupEnd = startupBegin;
+        long heapAfter = 0;
+        long shutdownBegin;
+        long shutdownEnd;
+        ExecutorService executor = ExecutionStrategy.VIRTUAL.newExecutor();
+        try {
+            for (int i = 0; i < participants; i++) {
+                boolean writer = i < numberOfWriters;
+                executor.execute(() -> participate(writer, holdTime, running, completed));
+            }
+            startupEnd = System.nanoTime();
+            long deadline = startupEnd + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+
+            while (System.nanoTime() < deadline && parkedParticipants() < participants) {
+                Thread.sleep(1);
+            }
+            System.gc();
+            heapAfter = runtime.totalMemory() - runtime.freeMemory();
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Main thread interrupted", e);
+        } finally {
+            shutdownBegin = System.nanoTime();
+            running.set(false);
+            semaphore.release(DRAIN_PERMITS);
+            boolean interrupted = Thread.interrupted();
             try {
-                t.join();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                logger.error("Main thread interrupted", e);
+                executor.close();
+            } finally {
+                semaphore.acquireUninterruptibly(DRAIN_PERMITS);
+                setDetailedState(previousDetailedState);
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
             }
+            shutdownEnd = System.nanoTime();
         }
+
+        return new ScaleReport(participants, (startupEnd - startupBegin) / 1e6, (shutdownEnd - shutdownBegin) / 1e6,
+                participants == 0 ? 0 : Math.max(0, heapAfter - heapBefore) / participants, completed.sum());
+    }
+
+    /**
+     * @return number of threads waiting for or inside the library
+     */
+    private int parkedParticipants() {
+        Snapshot snapshot = snapshot();
+        return snapshot.queueDepth() + snapshot.activeReaders() + snapshot.activeWriters();
+    }
+
+    /**
+     * Participant loop of {@link #runAtScale}: enters, holds and leaves
+     * until the run stops.
+     */
+    private void participate(boolean writer, int holdTime, AtomicBoolean running, LongAdder completed) {
+        try {
+            while (running.get()) {
+                boolean held;
+                if (writer) {
+                    startWriting();
+                    try {
+                        held = hold(holdTime, running);
+                    } finally {
+                        stopWriting();
+                    }
+                } else {
+                    startReading();
+                    try {
+                        held = hold(holdTime, running);
+                    } finally {
+                        stopReading();
+                    }
+                }
+                if (held) {
+                    completed.increment();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stays inside the library unless the run is already draining.
+     *
+     * @return {@code true} if the operation was performed
+     */
+    private static boolean hold(int holdTime, AtomicBoolean running) throws InterruptedException {
+        if (!running.get()) {
+            return false;
+        }
+        Thread.sleep(holdTime);
+        return true;
+    }
+
+    /**
+     * Validates the weight of a reader.
+     *
+     * @param weight number of capacity units
+     */
+    private void checkWeight(int weight) {
+        if (weight < 1 || weight > capacity) {
+            throw new IllegalArgumentException("Reader weight must be between 1 and " + capacity);
+        }
+    }
+
+    /**
+     * Removes the calling thread from the waiting state after its acquisition
+     * was interrupted.
+     *
+     * @param role        role of the calling thread
+     * @param heavyReader {@code true} for a reader with weight above 1
+     */
+    private void abandonWaiting(byte role, boolean heavyReader) {
+        lock.lock();
+        try {
+            beginUpdate();
+            if (role == TraceRecorder.READER) {
+                waitingReaders--;
+            } else {
+                waitingWriters--;
+            }
+            endUpdate();
+            if (heavyReader) {
+                heavyReaderLeftQueue();
+            }
+            if (detailedState) {
+                waitingQueue.remove(Thread.currentThread().getName());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A heavy reader stopped waiting; the next one gets a fresh bypass budget.
+     * Must be called while holding the lock.
+     */
+    private void heavyReaderLeftQueue() {
+        waitingHeavyReaders--;
+        bypasses = 0;
     }
 
     /**
      * Prints the current state of the library and thread activity to the log.
+     * <p>
+     * Nothing is built when detailed state is disabled or info logging is off.
+     * </p>
      *
-     * @param message action description to be logged
+     * @param threadName name of the acting thread
+     * @param action     action description to be logged
      */
-    private void printStatus(String message) {
-        if (!logger.isInfoEnabled()) {
+    private void printStatus(String threadName, String action) {
+        if (!detailedState || !logger.isInfoEnabled()) {
             return;
         }
+        String message = threadName + " " + action;
         StringBuilder sb = new StringBuilder();
         String separator = "+----------------------------------------------------------------------------------+";
         String newline = System.lineSeparator();
@@ -220,22 +744,177 @@ public class Library {
         logger.info(sb.toString());
     }
 
+    /**
+     * Consistent view of the library counters.
+     *
+     * @param waitingReaders readers waiting to enter
+     * @param activeReaders  readers inside
+     * @param waitingWriters writers waiting to enter
+     * @param activeWriters  writers inside
+     * @param queueDepth     total number of waiting threads
+     * @param epoch          number of state changes so far
+     */
+    public record Snapshot(int waitingReaders, int activeReaders, int waitingWriters, int activeWriters,
+                           int queueDepth, long epoch) {
+    }
+
+    /**
+     * Returns a consistent snapshot of the counters without taking the lock.
+     * <p>
+     * The counters are read between two reads of the sequence number and the
+     * read is retried if a state change was in progress or completed in the
+     * meantime. Acquiring and releasing threads never wait for readers of
+     * the snapshot.
+     * </p>
+     *
+     * @return the current counters
+     */
+    public Snapshot snapshot() {
+        while (true) {
+            long before = version;
+            if ((before & 1) == 0) {
+                int currentWaitingReaders = waitingReaders;
+                int currentActiveReaders = activeReaders;
+                int currentWaitingWriters = waitingWriters;
+                int currentActiveWriters = activeWriters;
+                VarHandle.loadLoadFence();
+                if (version == before) {
+                    return new Snapshot(currentWaitingReaders, currentActiveReaders, currentWaitingWriters,
+                            currentActiveWriters, currentWaitingReaders + currentWaitingWriters, before >>> 1);
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Marks the start of a state change; the sequence number becomes odd.
+     * Must be called while holding the lock. Only counter updates belong
+     * between this and {@link #endUpdate()}, since snapshot readers spin
+     * for as long as the sequence number stays odd.
+     */
+    private void beginUpdate() {
+        version = version + 1;
+        VarHandle.storeStoreFence();
+    }
+
+    /**
+     * Marks the end of a state change; the sequence number becomes even.
+     * Must be called while holding the lock.
+     */
+    private void endUpdate() {
+        version = version + 1;
+    }
+
+    /**
+     * Records an event in the trace, if tracing is enabled.
+     *
+     * @param role  role of the calling thread
+     * @param event event type
+     */
+    private void trace(byte role, byte event) {
+        if (traceRecorder != null) {
+            traceRecorder.record(role, event, waitingReaders + waitingWriters);
+        }
+    }
+
+    /**
+     * Enables binary tracing of every WAIT, ENTER and LEAVE.
+     * <p>
+     * Must be called before any reader or writer starts; {@code null}
+     * disables tracing.
+     * </p>
+     *
+     * @param traceRecorder the recorder receiving the events
+     */
+    public void setTraceRecorder(TraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    /**
+     * Enables acquisition counters and wait/hold-time histograms.
+     * <p>
+     * Must be called before any reader or writer starts; {@code null}
+     * disables them. Reading and writing must then be stopped by the thread
+     * that started it, since the hold time is measured per thread.
+     * </p>
+     *
+     * @param metrics the metrics receiving the measurements
+     */
+    public void setMetrics(LibraryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets how many light readers may bypass a waiting heavy reader, see
+     * {@link #startReading(int)}. Defaults to the capacity; {@code 0} admits
+     * readers strictly in arrival order.
+     *
+     * @param maxReaderBypass bypasses per waiting heavy reader, at least 0
+     */
+    public void setReaderBypass(int maxReaderBypass) {
+        if (maxReaderBypass < 0) {
+            throw new IllegalArgumentException("Reader bypass must not be negative");
+        }
+        lock.lock();
+        try {
+            this.maxReaderBypass = maxReaderBypass;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Enables the cohort mode for writers.
+     * <p>
+     * Writers are grouped by the affinity function and exclusive access is
+     * passed between writers of one group for at most
+     * {@code maxLocalHandoffs} consecutive handoffs before the global permits
+     * are released. Carrier threads of virtual threads are not exposed by the
+     * JDK, so a typical affinity is the thread id of platform threads bound
+     * to one socket. Must be called before any writer starts; {@code stopWriting}
+     * must be called by the thread that started writing.
+     * </p>
+     *
+     * @param groups           number of cohorts
+     * @param maxLocalHandoffs maximal number of consecutive local handoffs
+     * @param affinity         maps a thread to its cohort
+     */
+    public void enableCohortMode(int groups, int maxLocalHandoffs, ToIntFunction<Thread> affinity) {
+        cohortLock = new CohortLock(semaphore, capacity, groups, maxLocalHandoffs, affinity);
+    }
+
+    /**
+     * Enables or disables the detailed state: the named waiting queue, the
+     * list of threads inside and the status printout.
+     * <p>
+     * Counters are maintained either way. Must be called before any reader
+     * or writer starts.
+     * </p>
+     *
+     * @param detailedState {@code false} to keep only counters
+     */
+    public void setDetailedState(boolean detailedState) {
+        this.detailedState = detailedState;
+    }
+
     /**
      * Returns the total number of active users in the library.
      *
      * @return number of active readers and writers
      */
     public int getActiveUsersCount() {
-        return activeReaders + activeWriters;
+        Snapshot snapshot = snapshot();
+        return snapshot.activeReaders() + snapshot.activeWriters();
     }
 
     /**
      * Returns the number of threads waiting to enter the library.
      *
-     * @return size of the waiting queue
+     * @return number of waiting readers and writers
      */
     public int getWaitingQueueCount() {
-        return waitingQueue.size();
+        return snapshot().queueDepth();
     }
 
     /**
@@ -244,19 +923,97 @@ public class Library {
      * @return {@code true} if a writer is active, {@code false} otherwise
      */
     public boolean isWriterInside() {
-        return activeWriters != 0;
+        return snapshot().activeWriters() != 0;
     }
 
     /**
      * Application entry point used for demonstration and testing.
+     * <p>
+     * An optional fourth argument names the {@link ExecutionStrategy}; the run
+     * is then observed by {@link RunDiagnostics}, whose report is logged when
+     * the application shuts down. With {@code --scale} as the first argument
+     * the participants are run with {@link #runAtScale} for the given number
+     * of milliseconds and the scale report is logged.
+     * </p>
+     *
+     * <p>
+     * If the {@code library.metrics.port} system property is set, the library
+     * is exported by a {@link MetricsServer} on that port for the duration of
+     * the run.
+     * </p>
      *
      * @param args args[0] numberOfWriters args[1] numberOfReaders arg[2] timeStamp
+     *             args[3] optional strategy (virtual, platform or fork_join),
+     *             or --scale numberOfWriters numberOfReaders timeStamp durationMillis
      */
     public static void main(String[] args) {
         Library lib = new Library();
+        MetricsServer metricsServer = startMetricsServer(lib);
+        try {
+            run(lib, args);
+        } finally {
+            if (metricsServer != null) {
+                metricsServer.close();
+            }
+        }
+    }
+
+    /**
+     * Starts a {@link MetricsServer} on all local interfaces if the
+     * {@code library.metrics.port} system property is set.
+     *
+     * @param lib the library to export
+     * @return the started server, or {@code null} if disabled or it cannot be started
+     */
+    private static MetricsServer startMetricsServer(Library lib) {
+        String port = System.getProperty("library.metrics.port");
+        if (port == null) {
+            return null;
+        }
+        try {
+            LibraryMetrics metrics = new LibraryMetrics();
+            lib.setMetrics(metrics);
+            return new MetricsServer(lib, metrics, new InetSocketAddress(Integer.parseInt(port)));
+        } catch (IllegalArgumentException e) {
+            logger.error("Metrics port must be an integer between 0 and 65535");
+        } catch (IOException e) {
+            logger.error("Cannot start metrics server", e);
+        }
+        return null;
+    }
 
+    private static void run(Library lib, String[] args) {
+        if (args.length > 0 && args[0].equals("--scale")) {
+            try {
+                ScaleReport report = lib.runAtScale(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                        Integer.parseInt(args[3]), Long.parseLong(args[4]));
+                logger.info("{}", report);
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                logger.error("Scale mode arguments must be exactly 4 integers");
+            }
+            return;
+        }
         try {
-            lib.run(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            int numberOfWriters = Integer.parseInt(args[0]);
+            int numberOfReaders = Integer.parseInt(args[1]);
+            int sleepTime = Integer.parseInt(args[2]);
+            if (args.length > 3) {
+                ExecutionStrategy strategy;
+                try {
+                    strategy = ExecutionStrategy.valueOf(args[3].toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    logger.error("Unknown execution strategy, expected one of virtual, platform or fork_join");
+                    return;
+                }
+                RunDiagnostics diagnostics = new RunDiagnostics(lib);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    diagnostics.close();
+                    logger.info("{} {}", strategy, diagnostics.report());
+                }));
+                lib.run(numberOfWriters, numberOfReaders, sleepTime, strategy);
+            } else {
+                lib.run(numberOfWriters, numberOfReaders, sleepTime);
+            }
         } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
             logger.error("Arguments must be exactly 3 integers");
         }
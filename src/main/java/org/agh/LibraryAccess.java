@@ -0,0 +1,37 @@
+package org.agh;
+
+/**
+ * The {@code LibraryAccess} interface describes the acquisition API shared by
+ * every implementation of the readers–writers admission rules.
+ * <p>
+ * It is implemented by the in-process {@link Library} and by the networked
+ * {@link LibraryClient}, so {@link Reader} and {@link Writer} tasks can run
+ * unchanged against a local library or a remote {@link LibraryServer}.
+ * </p>
+ */
+public interface LibraryAccess {
+
+    /**
+     * Starts a reading operation, waiting until a reader may enter.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    void startReading() throws InterruptedException;
+
+    /**
+     * Starts a writing operation, waiting until exclusive access is granted.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    void startWriting() throws InterruptedException;
+
+    /**
+     * Ends a reading operation started by the calling thread.
+     */
+    void stopReading();
+
+    /**
+     * Ends a writing operation started by the calling thread.
+     */
+    void stopWriting();
+}
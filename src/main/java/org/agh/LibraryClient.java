@@ -0,0 +1,223 @@
+package org.agh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.agh.LibraryProtocol.*;
+
+/**
+ * The {@code LibraryClient} class gives access to a remote {@link LibraryServer}
+ * through the same acquisition API as a local {@link Library}.
+ * <p>
+ * A client owns one connection that may be shared by any number of threads.
+ * Requests of different threads are pipelined on the connection, and a
+ * background virtual thread dispatches the responses to the waiting callers.
+ * Each thread holds at most one lease at a time, exactly like a thread
+ * calling {@code startReading}/{@code stopReading} on a local library.
+ * </p>
+ */
+public class LibraryClient implements LibraryAccess, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LibraryClient.class);
+    private final SocketChannel channel;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+    private final Map<Integer, CompletableFuture<Byte>> pending = new ConcurrentHashMap<>();
+    private final ThreadLocal<Integer> heldLease = new ThreadLocal<>();
+    private final AtomicInteger nextToken = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * Connects a new {@code LibraryClient} to a library server.
+     *
+     * @param address address of the {@link LibraryServer}
+     * @throws IOException if the connection cannot be established
+     */
+    public LibraryClient(InetSocketAddress address) throws IOException {
+        channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Thread.ofVirtual().name("LIBRARY CLIENT").start(this::readResponses);
+    }
+
+    /**
+     * Acquires a shared lease from the server.
+     *
+     * @throws InterruptedException  if the thread is interrupted while waiting
+     * @throws IllegalStateException if the thread already holds a lease or the
+     *                               connection is closed
+     */
+    @Override
+    public void startReading() throws InterruptedException {
+        acquire(ACQUIRE_READ);
+    }
+
+    /**
+     * Acquires an exclusive lease from the server.
+     *
+     * @throws InterruptedException  if the thread is interrupted while waiting
+     * @throws IllegalStateException if the thread already holds a lease or the
+     *                               connection is closed
+     */
+    @Override
+    public void startWriting() throws InterruptedException {
+        acquire(ACQUIRE_WRITE);
+    }
+
+    /**
+     * Releases the shared lease held by the calling thread.
+     *
+     * @throws IllegalStateException if no lease is held or it already expired
+     */
+    @Override
+    public void stopReading() {
+        release();
+    }
+
+    /**
+     * Releases the exclusive lease held by the calling thread.
+     *
+     * @throws IllegalStateException if no lease is held or it already expired
+     */
+    @Override
+    public void stopWriting() {
+        release();
+    }
+
+    /**
+     * Extends the lease held by the calling thread by the server lease time.
+     *
+     * @throws IllegalStateException if no lease is held or it already expired
+     */
+    public void renew() {
+        Integer token = heldLease.get();
+        if (token == null) {
+            throw new IllegalStateException("Current thread holds no lease");
+        }
+        byte status = awaitUninterruptibly(send(RENEW, token));
+        if (status != RENEWED) {
+            throw new IllegalStateException("Lease " + token + " is no longer held");
+        }
+    }
+
+    /**
+     * Closes the connection. The server releases every lease still held.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.error("Failed to close library client", e);
+        }
+    }
+
+    private void acquire(byte operation) throws InterruptedException {
+        if (heldLease.get() != null) {
+            throw new IllegalStateException("Current thread already holds a lease");
+        }
+        int token = nextToken.incrementAndGet();
+        CompletableFuture<Byte> response = send(operation, token);
+        byte status;
+        try {
+            status = response.get();
+        } catch (InterruptedException e) {
+            pending.remove(token);
+            send(RELEASE, token);
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Library server connection lost", e.getCause());
+        }
+        if (status != GRANTED) {
+            throw new IllegalStateException("Acquisition rejected with status " + status);
+        }
+        heldLease.set(token);
+    }
+
+    private void release() {
+        Integer token = heldLease.get();
+        if (token == null) {
+            throw new IllegalStateException("Current thread holds no lease");
+        }
+        heldLease.remove();
+        byte status = awaitUninterruptibly(send(RELEASE, token));
+        if (status != RELEASED) {
+            throw new IllegalStateException("Lease " + token + " expired before release");
+        }
+    }
+
+    /**
+     * Registers a response slot for the token and writes the request frame.
+     */
+    private CompletableFuture<Byte> send(byte operation, int token) {
+        CompletableFuture<Byte> response = new CompletableFuture<>();
+        pending.put(token, response);
+        if (closed) {
+            response.completeExceptionally(new IOException("Connection closed"));
+            return response;
+        }
+        writeLock.lock();
+        try {
+            frame.clear();
+            frame.put(operation).putInt(token).flip();
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+        } catch (IOException e) {
+            pending.remove(token);
+            response.completeExceptionally(e);
+        } finally {
+            writeLock.unlock();
+        }
+        return response;
+    }
+
+    private static byte awaitUninterruptibly(CompletableFuture<Byte> response) {
+        try {
+            return response.join();
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Library server connection lost", e.getCause());
+        }
+    }
+
+    /**
+     * Reads response frames and completes the matching pending requests.
+     * Unsolicited frames, such as expiry notices, are ignored.
+     */
+    private void readResponses() {
+        ByteBuffer in = ByteBuffer.allocate(4096);
+        try {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                while (in.remaining() >= FRAME_SIZE) {
+                    byte status = in.get();
+                    CompletableFuture<Byte> response = pending.remove(in.getInt());
+                    if (response != null) {
+                        response.complete(status);
+                    }
+                }
+                in.compact();
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                logger.error("Library server connection failed", e);
+            }
+        } finally {
+            closed = true;
+            IOException cause = new IOException("Connection closed");
+            pending.values().forEach(response -> response.completeExceptionally(cause));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.agh;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code LibraryMetrics} class collects acquisition counters and
+ * wait/hold-time histograms of a {@link Library}.
+ * <p>
+ * All counters are {@link LongAdder}s, so recording from many threads does
+ * not contend on a shared cache line, and nothing here touches the library
+ * lock. Histograms use fixed bucket bounds from 100 µs to 10 s; bucket counts
+ * are kept per bucket and accumulated when rendered.
+ * </p>
+ */
+public class LibraryMetrics {
+
+    /**
+     * Upper bounds of the histogram buckets in nanoseconds, without +Inf.
+     */
+    static final long[] BUCKET_BOUNDS = {
+            TimeUnit.MICROSECONDS.toNanos(100),
+            TimeUnit.MILLISECONDS.toNanos(1),
+            TimeUnit.MILLISECONDS.toNanos(5),
+            TimeUnit.MILLISECONDS.toNanos(10),
+            TimeUnit.MILLISECONDS.toNanos(50),
+            TimeUnit.MILLISECONDS.toNanos(100),
+            TimeUnit.MILLISECONDS.toNanos(500),
+            TimeUnit.SECONDS.toNanos(1),
+            TimeUnit.SECONDS.toNanos(5),
+            TimeUnit.SECONDS.toNanos(10)
+    };
+
+    @Getter
+    private final LongAdder[] acquisitions = {new LongAdder(), new LongAdder()};
+    @Getter
+    private final Histogram[] waitTimes = {new Histogram(), new Histogram()};
+    @Getter
+    private final Histogram[] holdTimes = {new Histogram(), new Histogram()};
+    private final ThreadLocal<long[]> enteredAt = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * Records an acquisition of the calling thread.
+     *
+     * @param role      {@link TraceRecorder#READER} or {@link TraceRecorder#WRITER}
+     * @param waitStart {@link System#nanoTime()} taken when the thread arrived
+     */
+    public void entered(byte role, long waitStart) {
+        long now = System.nanoTime();
+        acquisitions[role].increment();
+        waitTimes[role].record(now - waitStart);
+        enteredAt.get()[0] = now;
+    }
+
+    /**
+     * Records that the calling thread left the library.
+     *
+     * @param role {@link TraceRecorder#READER} or {@link TraceRecorder#WRITER}
+     */
+    public void left(byte role) {
+        holdTimes[role].record(System.nanoTime() - enteredAt.get()[0]);
+    }
+
+    /**
+     * Histogram of durations with the bounds of {@link #BUCKET_BOUNDS}.
+     */
+    @Getter
+    public static final class Histogram {
+        private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length + 1];
+        private final LongAdder sumNanos = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS.length && nanos > BUCKET_BOUNDS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            sumNanos.add(nanos);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.agh;
+
+/**
+ * Constants of the binary protocol spoken between {@link LibraryServer}
+ * and {@link LibraryClient}.
+ * <p>
+ * Every frame in both directions is exactly {@link #FRAME_SIZE} bytes long:
+ * a one byte operation (requests) or status (responses) followed by a
+ * big-endian {@code int} lease token chosen by the client. Fixed-size frames
+ * let both sides pipeline any number of requests on one connection and let
+ * the server coalesce many responses into a single write.
+ * </p>
+ */
+final class LibraryProtocol {
+
+    static final int FRAME_SIZE = 5;
+
+    static final byte ACQUIRE_READ = 1;
+    static final byte ACQUIRE_WRITE = 2;
+    static final byte RELEASE = 3;
+    static final byte RENEW = 4;
+
+    static final byte GRANTED = 1;
+    static final byte RELEASED = 2;
+    static final byte RENEWED = 3;
+    static final byte EXPIRED = 4;
+    static final byte UNKNOWN_LEASE = 5;
+    static final byte BAD_REQUEST = 6;
+
+    private LibraryProtocol() {
+    }
+}
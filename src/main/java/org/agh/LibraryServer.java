@@ -0,0 +1,411 @@
+package org.agh;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.agh.LibraryProtocol.*;
+
+/**
+ * The {@code LibraryServer} class exposes a {@link Library} as a standalone
+ * coordination service reachable over TCP.
+ * <p>
+ * A single selector thread accepts connections and decodes the fixed-size
+ * frames described in {@link LibraryProtocol}. Clients may pipeline any number
+ * of requests on one connection. Every granted acquisition is a lease owned by
+ * its own virtual thread, which blocks in the library on behalf of the remote
+ * caller and later releases it, so the library always sees start and stop
+ * called from the same thread.
+ * </p>
+ *
+ * <p>
+ * Responses are appended to a per-connection buffer and flushed by the
+ * selector thread, so grants that become ready together leave in a single
+ * write. A lease that is not renewed within the lease time is released by the
+ * server, and all leases of a connection are released when it closes. A
+ * lease released while its thread still waits for admission, by the client
+ * giving up or by a closed connection, interrupts that thread, so it never
+ * takes the library for a caller that is gone.
+ * </p>
+ */
+public class LibraryServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LibraryServer.class);
+    private static final int BUFFER_SIZE = 4096;
+    private static final int BACKLOG = 4096;
+    private final Library library;
+    private final long leaseMillis;
+    @Getter
+    private final int port;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private final Thread selectorThread;
+    private volatile boolean running = true;
+
+    /**
+     * Creates a new {@code LibraryServer} and starts serving immediately.
+     *
+     * @param library     the library guarding admission
+     * @param address     the address to bind; port {@code 0} picks a free port
+     * @param leaseMillis the lease time in milliseconds after which an
+     *                    unrenewed lease is released; {@code 0} disables expiry
+     * @throws IOException if the server socket cannot be opened
+     */
+    public LibraryServer(Library library, InetSocketAddress address, long leaseMillis) throws IOException {
+        if (leaseMillis < 0) {
+            throw new IllegalArgumentException("Lease time must not be negative");
+        }
+        this.library = library;
+        this.leaseMillis = leaseMillis;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address, BACKLOG);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        port = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        selectorThread = Thread.ofPlatform().name("LIBRARY SERVER").start(this::serve);
+        logger.info("Library server listening on port {}", port);
+    }
+
+    /**
+     * Stops accepting requests and closes every client connection.
+     * <p>
+     * Leases still held by clients are released.
+     * </p>
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Selector loop: accepts connections, decodes requests and flushes the
+     * responses queued by lease threads.
+     */
+    private void serve() {
+        try {
+            while (running) {
+                selector.select();
+                wakeupPending.set(false);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handleKey(key);
+                }
+                Connection connection;
+                while ((connection = pendingWrites.poll()) != null) {
+                    flush(connection);
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            logger.error("Library server stopped unexpectedly", e);
+        } finally {
+            connections.forEach(Connection::close);
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                logger.error("Failed to close library server", e);
+            }
+        }
+    }
+
+    private void handleKey(SelectionKey key) throws IOException {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.flush();
+            }
+        } catch (IOException e) {
+            connection.close();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+        }
+    }
+
+    private void flush(Connection connection) {
+        try {
+            connection.flush();
+        } catch (IOException e) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Client connection state. The inbound buffer is touched only by the
+     * selector thread; the outbound buffer is shared with lease threads and
+     * guarded by the connection monitor.
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        private final Map<Integer, Lease> leases = new ConcurrentHashMap<>();
+        private ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+        private boolean flushQueued;
+        private boolean closed;
+        private SelectionKey key;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private void read() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            in.flip();
+            while (in.remaining() >= FRAME_SIZE) {
+                handle(in.get(), in.getInt());
+            }
+            in.compact();
+        }
+
+        private void handle(byte operation, int token) {
+            switch (operation) {
+                case ACQUIRE_READ, ACQUIRE_WRITE -> {
+                    Lease lease = new Lease(this, token, operation == ACQUIRE_WRITE);
+                    if (leases.putIfAbsent(token, lease) != null) {
+                        respond(BAD_REQUEST, token);
+                        return;
+                    }
+                    lease.thread = Thread.ofVirtual().unstarted(lease);
+                    lease.thread.start();
+                }
+                case RELEASE -> {
+                    Lease lease = leases.get(token);
+                    if (lease == null) {
+                        respond(UNKNOWN_LEASE, token);
+                    } else {
+                        lease.release();
+                    }
+                }
+                case RENEW -> {
+                    Lease lease = leases.get(token);
+                    if (lease == null) {
+                        respond(UNKNOWN_LEASE, token);
+                    } else {
+                        lease.renew();
+                        respond(RENEWED, token);
+                    }
+                }
+                default -> respond(BAD_REQUEST, token);
+            }
+        }
+
+        /**
+         * Queues a response frame and schedules the connection for flushing.
+         * The selector is woken at most once per batch of responses.
+         */
+        private void respond(byte status, int token) {
+            boolean schedule;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (out.remaining() < FRAME_SIZE) {
+                    ByteBuffer larger = ByteBuffer.allocate(out.capacity() * 2);
+                    out.flip();
+                    larger.put(out);
+                    out = larger;
+                }
+                out.put(status).putInt(token);
+                schedule = !flushQueued;
+                flushQueued = true;
+            }
+            if (schedule) {
+                pendingWrites.add(this);
+                if (!wakeupPending.getAndSet(true)) {
+                    selector.wakeup();
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                flushQueued = false;
+                out.flip();
+                channel.write(out);
+                boolean remaining = out.hasRemaining();
+                out.compact();
+                key.interestOps(remaining ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            }
+        }
+
+        private void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            connections.remove(this);
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.error("Failed to close client connection", e);
+            }
+            leases.values().forEach(Lease::release);
+        }
+    }
+
+    /**
+     * A single remote acquisition, executed by its own virtual thread.
+     */
+    private final class Lease implements Runnable {
+        private final Connection connection;
+        private final int token;
+        private final boolean exclusive;
+        private final CountDownLatch released = new CountDownLatch(1);
+        private Thread thread;
+        private volatile boolean granted;
+        private volatile long deadline;
+
+        private Lease(Connection connection, int token, boolean exclusive) {
+            this.connection = connection;
+            this.token = token;
+            this.exclusive = exclusive;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (exclusive) {
+                    library.startWriting();
+                } else {
+                    library.startReading();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                connection.leases.remove(token);
+                return;
+            }
+            granted = true;
+            renew();
+            connection.respond(GRANTED, token);
+            byte status = awaitRelease() ? RELEASED : EXPIRED;
+            connection.leases.remove(token);
+            if (exclusive) {
+                library.stopWriting();
+            } else {
+                library.stopReading();
+            }
+            connection.respond(status, token);
+        }
+
+        /**
+         * Releases the lease on request of the client or for a closed
+         * connection. A lease thread still waiting for admission is
+         * interrupted; one admitted in the meantime finds the lease released
+         * and leaves at once.
+         */
+        private void release() {
+            released.countDown();
+            if (!granted) {
+                thread.interrupt();
+            }
+        }
+
+        private void renew() {
+            deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+        }
+
+        /**
+         * Waits for the client to release the lease.
+         *
+         * @return {@code true} if released, {@code false} if the lease expired
+         */
+        private boolean awaitRelease() {
+            try {
+                if (leaseMillis == 0) {
+                    released.await();
+                    return true;
+                }
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    if (released.await(remaining, TimeUnit.NANOSECONDS)) {
+                        return true;
+                    }
+                }
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Starts a standalone library server on all local interfaces.
+     *
+     * @param args args[0] port args[1] optional lease time in milliseconds
+     */
+    public static void main(String[] args) {
+        try {
+            long lease = args.length > 1 ? Long.parseLong(args[1]) : 30_000;
+            InetSocketAddress address = new InetSocketAddress(Integer.parseInt(args[0]));
+            LibraryServer server = new LibraryServer(new Library(), address, lease);
+            server.selectorThread.join();
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            logger.error("Arguments must be a port and an optional lease time");
+        } catch (IOException e) {
+            logger.error("Cannot start library server", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package org.agh;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * The {@code LibrarySimulator} class is a deterministic discrete-event model
+ * of the {@link Library} admission rules.
+ * <p>
+ * Instead of sleeping threads, every participant is a small state object and
+ * time advances from event to event on a single thread, so minutes of
+ * activity are simulated in milliseconds. The model follows the fair
+ * semaphore used by the library: arrivals queue in FIFO order, a reader takes
+ * as many permits as its weight, a writer takes all of them, and nobody
+ * overtakes the head of the queue even if enough permits are free for them.
+ * </p>
+ *
+ * <p>
+ * All readers of a scenario share one weight. The bounded bypass of light
+ * readers past a waiting heavy reader (see {@link Library#startReading(int)})
+ * needs mixed weights, so it never applies to a simulated run.
+ * </p>
+ *
+ * <p>
+ * All randomness (start order, hold and think times) comes from a single
+ * seeded {@link Random}, so a scenario with the same seed always produces the
+ * same result.
+ * </p>
+ */
+@Getter
+public class LibrarySimulator {
+
+    private static final Logger logger = LoggerFactory.getLogger(LibrarySimulator.class);
+    private final long seed;
+
+    /**
+     * A distribution of durations in milliseconds.
+     */
+    @FunctionalInterface
+    public interface Distribution {
+
+        /**
+         * Draws a duration.
+         *
+         * @param random source of randomness
+         * @return duration in milliseconds
+         */
+        double sample(Random random);
+
+        /**
+         * @param millis fixed duration
+         * @return distribution always returning {@code millis}
+         */
+        static Distribution constant(double millis) {
+            return random -> millis;
+        }
+
+        /**
+         * @param meanMillis mean duration
+         * @return exponential distribution with the given mean
+         */
+        static Distribution exponential(double meanMillis) {
+            return random -> -meanMillis * Math.log(1 - random.nextDouble());
+        }
+
+        /**
+         * @param minMillis shortest duration
+         * @param maxMillis longest duration
+         * @return uniform distribution over the given range
+         */
+        static Distribution uniform(double minMillis, double maxMillis) {
+            return random -> minMillis + (maxMillis - minMillis) * random.nextDouble();
+        }
+    }
+
+    /**
+     * Workload of a simulation run.
+     *
+     * @param writers        number of writers
+     * @param readers        number of readers
+     * @param writerHold     time a writer stays inside the library
+     * @param readerHold     time a reader stays inside the library
+     * @param think          time between leaving and arriving again
+     * @param durationMillis simulated time in milliseconds
+     * @param capacity       number of capacity units, all taken by a writer
+     * @param readerWeight   capacity units taken by every reader
+     */
+    public record Scenario(int writers, int readers, Distribution writerHold, Distribution readerHold,
+                           Distribution think, double durationMillis, int capacity, int readerWeight) {
+
+        public Scenario {
+            if (capacity < 1 || readerWeight < 1 || readerWeight > capacity) {
+                throw new IllegalArgumentException("Reader weight must be between 1 and the capacity");
+            }
+        }
+
+        /**
+         * Scenario with the {@link Library#DEFAULT_CAPACITY default capacity}
+         * and readers of weight 1.
+         *
+         * @param writers        number of writers
+         * @param readers        number of readers
+         * @param writerHold     time a writer stays inside the library
+         * @param readerHold     time a reader stays inside the library
+         * @param think          time between leaving and arriving again
+         * @param durationMillis simulated time in milliseconds
+         */
+        public Scenario(int writers, int readers, Distribution writerHold, Distribution readerHold,
+                        Distribution think, double durationMillis) {
+            this(writers, readers, writerHold, readerHold, think, durationMillis, Library.DEFAULT_CAPACITY, 1);
+        }
+
+        /**
+         * Scenario matching {@link Library#run}: every participant holds the
+         * library for {@code sleepTime} and arrives again immediately.
+         *
+         * @param writers        number of writers
+         * @param readers        number of readers
+         * @param sleepTime      hold time in milliseconds
+         * @param durationMillis simulated time in milliseconds
+         * @return the scenario
+         */
+        public static Scenario of(int writers, int readers, int sleepTime, double durationMillis) {
+            Distribution hold = Distribution.constant(Math.min(Math.abs(sleepTime), 3000));
+            return new Scenario(writers, readers, hold, hold, Distribution.constant(0), durationMillis);
+        }
+    }
+
+    /**
+     * Outcome of a simulation run. All times are simulated milliseconds.
+     *
+     * @param completedReads    finished reading operations
+     * @param completedWrites   finished writing operations
+     * @param throughput        finished operations per simulated second
+     * @param p50Wait           median wait for admission
+     * @param p95Wait           95th percentile wait for admission
+     * @param p99Wait           99th percentile wait for admission
+     * @param maxWait           longest wait, including waits still in progress
+     * @param starved           participants that never completed an operation
+     * @param fairness          Jain's fairness index of per-participant completions
+     */
+    public record Result(long completedReads, long completedWrites, double throughput, double p50Wait,
+                         double p95Wait, double p99Wait, double maxWait, int starved, double fairness) {
+    }
+
+    /**
+     * Creates a new {@code LibrarySimulator}.
+     *
+     * @param seed seed of the random source
+     */
+    public LibrarySimulator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Simulates the scenario and collects throughput, wait and starvation metrics.
+     *
+     * @param scenario workload to simulate
+     * @return simulation result
+     */
+    public Result simulate(Scenario scenario) {
+        return simulate(scenario, null);
+    }
+
+    /**
+     * Observer of the queue, used to replay a simulated run against the real
+     * engine.
+     */
+    interface Listener {
+
+        /**
+         * A participant joined the end of the queue.
+         *
+         * @param time        simulated time in milliseconds
+         * @param participant index of the participant, writers first
+         * @param writer      {@code true} for a writer
+         */
+        void arrived(double time, int participant, boolean writer);
+
+        /**
+         * A participant was admitted into the library.
+         *
+         * @param time        simulated time in milliseconds
+         * @param participant index of the participant, writers first
+         * @param writer      {@code true} for a writer
+         */
+        void admitted(double time, int participant, boolean writer);
+    }
+
+    /**
+     * Simulates the scenario and reports every arrival and admission.
+     *
+     * @param scenario workload to simulate
+     * @param listener receives arrivals and admissions, or {@code null}
+     * @return simulation result
+     */
+    Result simulate(Scenario scenario, Listener listener) {
+        return new Run(scenario, listener).execute();
+    }
+
+    private static final class Participant {
+        private final int index;
+        private final boolean writer;
+        private final int permits;
+        private double waitingSince;
+        private long completed;
+
+        private Participant(int index, boolean writer, int permits) {
+            this.index = index;
+            this.writer = writer;
+            this.permits = permits;
+        }
+    }
+
+    private record Event(double time, long sequence, Participant participant, boolean arrival) {
+    }
+
+    /**
+     * State of a single simulation run.
+     */
+    private final class Run {
+        private final Scenario scenario;
+        private final Listener listener;
+        private final Random random = new Random(seed);
+        private final PriorityQueue<Event> events = new PriorityQueue<>(
+                Comparator.comparingDouble(Event::time).thenComparingLong(Event::sequence));
+        private final Deque<Participant> queue = new ArrayDeque<>();
+        private final List<Participant> participants = new ArrayList<>();
+        private double[] waits = new double[1024];
+        private int waitCount;
+        private long sequence;
+        private int permits;
+        private double now;
+
+        private Run(Scenario scenario, Listener listener) {
+            this.scenario = scenario;
+            this.listener = listener;
+            permits = scenario.capacity();
+        }
+
+        private Result execute() {
+            for (int i = 0; i < scenario.writers(); i++) {
+                participants.add(new Participant(participants.size(), true, scenario.capacity()));
+            }
+            for (int i = 0; i < scenario.readers(); i++) {
+                participants.add(new Participant(participants.size(), false, scenario.readerWeight()));
+            }
+            Collections.shuffle(participants, random);
+            for (Participant participant : participants) {
+                schedule(0, participant, true);
+            }
+
+            Event event;
+            while ((event = events.poll()) != null && event.time() <= scenario.durationMillis()) {
+                now = event.time();
+                if (event.arrival()) {
+                    arrive(event.participant());
+                } else {
+                    leave(event.participant());
+                }
+            }
+            now = scenario.durationMillis();
+            return result();
+        }
+
+        private void arrive(Participant participant) {
+            participant.waitingSince = now;
+            queue.addLast(participant);
+            if (listener != null) {
+                listener.arrived(now, participant.index, participant.writer);
+            }
+            admit();
+        }
+
+        private void leave(Participant participant) {
+            permits += participant.permits;
+            participant.completed++;
+            schedule(now + scenario.think().sample(random), participant, true);
+            admit();
+        }
+
+        /**
+         * Grants permits to the head of the queue for as long as it fits,
+         * exactly like a fair semaphore.
+         */
+        private void admit() {
+            while (!queue.isEmpty() && queue.peekFirst().permits <= permits) {
+                Participant participant = queue.pollFirst();
+                permits -= participant.permits;
+                recordWait(now - participant.waitingSince);
+                if (listener != null) {
+                    listener.admitted(now, participant.index, participant.writer);
+                }
+                Distribution hold = participant.writer ? scenario.writerHold() : scenario.readerHold();
+                schedule(now + hold.sample(random), participant, false);
+            }
+        }
+
+        private void schedule(double time, Participant participant, boolean arrival) {
+            events.add(new Event(time, sequence++, participant, arrival));
+        }
+
+        private void recordWait(double wait) {
+            if (waitCount == waits.length) {
+                waits = Arrays.copyOf(waits, waitCount * 2);
+            }
+            waits[waitCount++] = wait;
+        }
+
+        private Result result() {
+            double[] sorted = Arrays.copyOf(waits, waitCount);
+            Arrays.sort(sorted);
+            double maxWait = waitCount == 0 ? 0 : sorted[waitCount - 1];
+            for (Participant participant : queue) {
+                maxWait = Math.max(maxWait, now - participant.waitingSince);
+            }
+
+            long reads = 0;
+            long writes = 0;
+            int starved = 0;
+            double sum = 0;
+            double sumOfSquares = 0;
+            for (Participant participant : participants) {
+                if (participant.writer) {
+                    writes += participant.completed;
+                } else {
+                    reads += participant.completed;
+                }
+                if (participant.completed == 0) {
+                    starved++;
+                }
+                sum += participant.completed;
+                sumOfSquares += (double) participant.completed * participant.completed;
+            }
+            double fairness = sumOfSquares == 0 ? 1 : sum * sum / (participants.size() * sumOfSquares);
+            double throughput = now == 0 ? 0 : (reads + writes) * 1000.0 / now;
+
+            return new Result(reads, writes, throughput, percentile(sorted, 0.50), percentile(sorted, 0.95),
+                    percentile(sorted, 0.99), maxWait, starved, fairness);
+        }
+    }
+
+    private static double percentile(double[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * Simulates a {@link Library#run} workload and logs the result.
+     *
+     * @param args args[0] numberOfWriters args[1] numberOfReaders arg[2] timeStamp
+     *             args[3] simulated milliseconds args[4] optional seed
+     */
+    public static void main(String[] args) {
+        try {
+            Scenario scenario = Scenario.of(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                    Integer.parseInt(args[2]), Double.parseDouble(args[3]));
+            long seed = args.length > 4 ? Long.parseLong(args[4]) : 0;
+            logger.info("{}", new LibrarySimulator(seed).simulate(scenario));
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            logger.error("Arguments must be writers, readers, sleep time, duration and an optional seed");
+        }
+    }
+}
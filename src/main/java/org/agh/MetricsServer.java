@@ -0,0 +1,238 @@
+package org.agh;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The {@code MetricsServer} class serves the state of a {@link Library} in the
+ * Prometheus text format on {@code /metrics}.
+ * <p>
+ * It is built on the JDK's {@link HttpServer} and exports the active and
+ * waiting threads per role, read from a lock-free {@link Library#snapshot()},
+ * together with the acquisition counters and the wait and hold-time
+ * histograms of {@link LibraryMetrics}.
+ * </p>
+ *
+ * <p>
+ * Every fixed part of the response (help lines, metric names and labels) is
+ * encoded once, and numbers are written digit by digit into a reusable byte
+ * buffer, so a scrape neither allocates text nor takes the library lock.
+ * Requests are handled one at a time by the dispatcher thread of the server.
+ * </p>
+ */
+public final class MetricsServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsServer.class);
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String[] ROLES = {"reader", "writer"};
+
+    private static final byte[] ACTIVE_HELP = ascii("# HELP library_active Threads inside the library.\n"
+            + "# TYPE library_active gauge\n");
+    private static final byte[][] ACTIVE = roleLines("library_active");
+    private static final byte[] WAITING_HELP = ascii("# HELP library_waiting Threads waiting to enter the library.\n"
+            + "# TYPE library_waiting gauge\n");
+    private static final byte[][] WAITING = roleLines("library_waiting");
+    private static final byte[] ACQUISITIONS_HELP = ascii("# HELP library_acquisitions_total Completed acquisitions.\n"
+            + "# TYPE library_acquisitions_total counter\n");
+    private static final byte[][] ACQUISITIONS = roleLines("library_acquisitions_total");
+    private static final HistogramLines WAIT_SECONDS = new HistogramLines("library_wait_seconds",
+            "Time from arrival to entering the library.");
+    private static final HistogramLines HOLD_SECONDS = new HistogramLines("library_hold_seconds",
+            "Time spent inside the library.");
+
+    private final Library library;
+    private final LibraryMetrics metrics;
+    @Getter
+    private final int port;
+    private final HttpServer server;
+    private byte[] buffer = new byte[8192];
+    private int position;
+
+    /**
+     * Creates a new {@code MetricsServer} and starts serving immediately.
+     *
+     * @param library the library whose counters are exported
+     * @param metrics the metrics enabled on the library with {@link Library#setMetrics}
+     * @param address the address to bind; port {@code 0} picks a free port
+     * @throws IOException if the server socket cannot be opened
+     */
+    public MetricsServer(Library library, LibraryMetrics metrics, InetSocketAddress address) throws IOException {
+        this.library = library;
+        this.metrics = metrics;
+        server = HttpServer.create(address, 0);
+        port = server.getAddress().getPort();
+        server.createContext("/metrics", this::handle);
+        server.start();
+        logger.info("Metrics server listening on port {}", port);
+    }
+
+    /**
+     * Stops serving metrics.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            synchronized (this) {
+                int length = render();
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                exchange.sendResponseHeaders(200, length);
+                exchange.getResponseBody().write(buffer, 0, length);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Renders the current metrics into the buffer.
+     *
+     * @return number of bytes written to {@link #buffer()}
+     */
+    synchronized int render() {
+        position = 0;
+        Library.Snapshot snapshot = library.snapshot();
+        write(ACTIVE_HELP);
+        writeLine(ACTIVE[TraceRecorder.READER], snapshot.activeReaders());
+        writeLine(ACTIVE[TraceRecorder.WRITER], snapshot.activeWriters());
+        write(WAITING_HELP);
+        writeLine(WAITING[TraceRecorder.READER], snapshot.waitingReaders());
+        writeLine(WAITING[TraceRecorder.WRITER], snapshot.waitingWriters());
+        write(ACQUISITIONS_HELP);
+        for (int role = 0; role < ROLES.length; role++) {
+            writeLine(ACQUISITIONS[role], metrics.getAcquisitions()[role].sum());
+        }
+        writeHistogram(WAIT_SECONDS, metrics.getWaitTimes());
+        writeHistogram(HOLD_SECONDS, metrics.getHoldTimes());
+        return position;
+    }
+
+    /**
+     * @return the buffer the last {@link #render()} wrote into
+     */
+    synchronized byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * Writes cumulative buckets, sum and count of both roles. The count is
+     * the sum of the buckets, so it always matches the {@code +Inf} bucket.
+     */
+    private void writeHistogram(HistogramLines lines, LibraryMetrics.Histogram[] histograms) {
+        write(lines.help);
+        for (int role = 0; role < ROLES.length; role++) {
+            long cumulative = 0;
+            for (int bucket = 0; bucket < lines.buckets[role].length; bucket++) {
+                cumulative += histograms[role].getBuckets()[bucket].sum();
+                writeLine(lines.buckets[role][bucket], cumulative);
+            }
+            write(lines.sum[role]);
+            writeSeconds(histograms[role].getSumNanos().sum());
+            writeByte('\n');
+            writeLine(lines.count[role], cumulative);
+        }
+    }
+
+    private void writeLine(byte[] prefix, long value) {
+        write(prefix);
+        writeLong(value);
+        writeByte('\n');
+    }
+
+    private void writeSeconds(long nanos) {
+        writeLong(nanos / 1_000_000_000L);
+        writeByte('.');
+        long fraction = nanos % 1_000_000_000L;
+        for (long divisor = 100_000_000L; divisor > 0; divisor /= 10) {
+            writeByte('0' + (int) (fraction / divisor % 10));
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+        ensureCapacity(20);
+        int start = position;
+        do {
+            buffer[position++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        for (int left = start, right = position - 1; left < right; left++, right--) {
+            byte digit = buffer[left];
+            buffer[left] = buffer[right];
+            buffer[right] = digit;
+        }
+    }
+
+    private void write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    private void ensureCapacity(int length) {
+        if (position + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[][] roleLines(String name) {
+        byte[][] lines = new byte[ROLES.length][];
+        for (int role = 0; role < ROLES.length; role++) {
+            lines[role] = ascii(name + "{role=\"" + ROLES[role] + "\"} ");
+        }
+        return lines;
+    }
+
+    /**
+     * Encoded fixed parts of one histogram.
+     */
+    private static final class HistogramLines {
+        private final byte[] help;
+        private final byte[][][] buckets = new byte[ROLES.length][][];
+        private final byte[][] sum;
+        private final byte[][] count;
+
+        private HistogramLines(String name, String description) {
+            help = ascii("# HELP " + name + " " + description + "\n# TYPE " + name + " histogram\n");
+            long[] bounds = LibraryMetrics.BUCKET_BOUNDS;
+            for (int role = 0; role < ROLES.length; role++) {
+                buckets[role] = new byte[bounds.length + 1][];
+                for (int bucket = 0; bucket <= bounds.length; bucket++) {
+                    String bound = bucket == bounds.length ? "+Inf"
+                            : BigDecimal.valueOf(bounds[bucket], 9).stripTrailingZeros().toPlainString();
+                    buckets[role][bucket] = ascii(name + "_bucket{role=\"" + ROLES[role] + "\",le=\"" + bound + "\"} ");
+                }
+            }
+            sum = roleLines(name + "_sum");
+            count = roleLines(name + "_count");
+        }
+    }
+}
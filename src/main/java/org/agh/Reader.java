@@ -19,16 +19,16 @@ import static java.lang.Math.abs;
 public class Reader implements Runnable{
 
     private static final Logger logger = LoggerFactory.getLogger(Reader.class);
-    private final Library library;
+    private final LibraryAccess library;
     private final int timeStamp;
     /**
      * Creates a new {@code Reader} instance.
      *
-     * @param library   the {@link Library} instance used for writing operations
+     * @param library   the {@link LibraryAccess} instance used for reading operations
      * @param sleepTime the thread sleep time in milliseconds; values greater
      *                  than 3000 ms are capped at 3000 ms
      */
-    public Reader(Library library,int sleepTime){
+    public Reader(LibraryAccess library,int sleepTime){
         this.library = library;
         if (sleepTime > 3000) {
             sleepTime = 3000;
@@ -53,13 +53,24 @@ public class Reader implements Runnable{
     public void run(){
         while (!Thread.currentThread().isInterrupted()) {
             try {
-                library.startReading();
-                Thread.sleep(timeStamp);
-                library.stopReading();
+                operate();
             } catch (InterruptedException e) {
                 logger.error("ERROR");
                 Thread.currentThread().interrupt();
             }
         }
     }
+
+    /**
+     * Performs a single reading operation.
+     *
+     * @return always {@code true}, a reader can keep reading
+     * @throws InterruptedException if the thread is interrupted while waiting or reading
+     */
+    boolean operate() throws InterruptedException {
+        library.startReading();
+        Thread.sleep(timeStamp);
+        library.stopReading();
+        return true;
+    }
 }
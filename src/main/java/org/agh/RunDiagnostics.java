@@ -0,0 +1,109 @@
+package org.agh;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code RunDiagnostics} class counts scheduling events of the JVM while
+ * a {@link Library} run is in progress.
+ * <p>
+ * Parking and carrier-thread pinning are observed through an in-process JFR
+ * recording stream with zero thresholds, so every event is counted, split
+ * into virtual and platform threads. JFR has no unpark event; every counted
+ * park ended by an unpark, an interrupt or a timeout. The library epoch is
+ * used to express throughput as state changes per second per core.
+ * </p>
+ */
+@Getter
+public class RunDiagnostics implements AutoCloseable {
+
+    private static final String THREAD_PARK = "jdk.ThreadPark";
+    private static final String VIRTUAL_THREAD_PINNED = "jdk.VirtualThreadPinned";
+    private final Library library;
+    private final RecordingStream stream = new RecordingStream();
+    private final LongAdder virtualParks = new LongAdder();
+    private final LongAdder platformParks = new LongAdder();
+    private final LongAdder pinnedEvents = new LongAdder();
+    private final LongAdder pinnedNanos = new LongAdder();
+    private final long startEpoch;
+    private final long startNanos;
+    private boolean closed;
+
+    /**
+     * Diagnostics gathered during a run.
+     *
+     * @param elapsed                 time since the diagnostics were started
+     * @param stateChanges            library state changes in that time
+     * @param stateChangesPerCore     state changes per second per available processor
+     * @param virtualParks            parks of virtual threads
+     * @param platformParks           parks of platform threads
+     * @param pinnedEvents            times a virtual thread blocked while pinned to its carrier
+     * @param pinnedTime              total time spent blocked while pinned
+     */
+    public record Report(Duration elapsed, long stateChanges, double stateChangesPerCore, long virtualParks,
+                         long platformParks, long pinnedEvents, Duration pinnedTime) {
+    }
+
+    /**
+     * Creates a new {@code RunDiagnostics} and starts recording immediately.
+     *
+     * @param library the library whose run is observed
+     */
+    public RunDiagnostics(Library library) {
+        this.library = library;
+        stream.enable(THREAD_PARK).withThreshold(Duration.ZERO);
+        stream.enable(VIRTUAL_THREAD_PINNED).withThreshold(Duration.ZERO);
+        stream.onEvent(THREAD_PARK, this::onPark);
+        stream.onEvent(VIRTUAL_THREAD_PINNED, this::onPinned);
+        startEpoch = library.snapshot().epoch();
+        startNanos = System.nanoTime();
+        stream.startAsync();
+    }
+
+    /**
+     * Returns the counts gathered so far. Events are delivered in batches,
+     * so the latest second may be missing until {@link #close()} is called.
+     *
+     * @return the current report
+     */
+    public Report report() {
+        long elapsed = System.nanoTime() - startNanos;
+        long stateChanges = library.snapshot().epoch() - startEpoch;
+        double perCore = elapsed == 0 ? 0
+                : stateChanges * 1e9 / elapsed / Runtime.getRuntime().availableProcessors();
+        return new Report(Duration.ofNanos(elapsed), stateChanges, perCore, virtualParks.sum(),
+                platformParks.sum(), pinnedEvents.sum(), Duration.ofNanos(pinnedNanos.sum()));
+    }
+
+    /**
+     * Stops recording after delivering every pending event.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        stream.stop();
+        stream.close();
+    }
+
+    private void onPark(RecordedEvent event) {
+        RecordedThread thread = event.getThread();
+        if (thread != null && thread.isVirtual()) {
+            virtualParks.increment();
+        } else {
+            platformParks.increment();
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedEvents.increment();
+        pinnedNanos.add(event.getDuration().toNanos());
+    }
+}
@@ -0,0 +1,215 @@
+package org.agh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * The {@code TraceReader} class decodes traces written by {@link TraceRecorder}
+ * for offline analysis.
+ * <p>
+ * A trace can be summarized as a latency breakdown (time spent waiting and
+ * time spent inside the library, per role) or converted into a Chrome trace
+ * event file that can be opened in {@code chrome://tracing} or Perfetto.
+ * </p>
+ */
+public final class TraceReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(TraceReader.class);
+    private static final String[] ROLES = {"READER", "WRITER"};
+
+    private TraceReader() {
+    }
+
+    /**
+     * A single decoded trace record.
+     *
+     * @param timestamp  {@link System#nanoTime()} of the event
+     * @param slot       id of the thread that recorded the event
+     * @param role       {@link TraceRecorder#READER} or {@link TraceRecorder#WRITER}
+     * @param event      {@link TraceRecorder#WAIT}, {@link TraceRecorder#ENTER}
+     *                   or {@link TraceRecorder#LEAVE}
+     * @param queueDepth waiting queue depth at the time of the event
+     */
+    public record TraceEvent(long timestamp, int slot, byte role, byte event, int queueDepth) {
+    }
+
+    /**
+     * A WAIT to ENTER or ENTER to LEAVE interval of one thread.
+     *
+     * @param slot     id of the thread
+     * @param role     role of the thread
+     * @param waiting  {@code true} for a waiting interval, {@code false} for a
+     *                 stay inside the library
+     * @param start    start timestamp in nanoseconds
+     * @param duration duration in nanoseconds
+     */
+    public record Interval(int slot, byte role, boolean waiting, long start, long duration) {
+    }
+
+    /**
+     * Reads all segment files of a trace directory, ordered by timestamp.
+     *
+     * @param directory directory written by a {@link TraceRecorder}
+     * @return decoded events
+     * @throws IOException if a segment cannot be read or is not a trace file
+     */
+    public static List<TraceEvent> read(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> file.getFileName().toString().matches("trace-\\d+\\.bin"))
+                    .sorted()
+                    .toList();
+        }
+        List<TraceEvent> events = new ArrayList<>();
+        for (Path file : files) {
+            ByteBuffer segment = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (segment.getInt() != TraceRecorder.MAGIC || segment.getInt() != TraceRecorder.RECORD_SIZE) {
+                throw new IOException("Not a library trace segment: " + file);
+            }
+            long count = segment.getLong();
+            for (long i = 0; i < count; i++) {
+                long timestamp = segment.getLong();
+                int slot = segment.getInt();
+                byte role = segment.get();
+                byte event = segment.get();
+                events.add(new TraceEvent(timestamp, slot, role, event, segment.getChar()));
+            }
+        }
+        events.sort(Comparator.comparingLong(TraceEvent::timestamp));
+        return events;
+    }
+
+    /**
+     * Pairs the events of every thread into waiting and inside intervals.
+     * Events whose counterpart was rolled out of the trace are skipped.
+     *
+     * @param events events ordered by timestamp
+     * @return intervals in order of completion
+     */
+    public static List<Interval> intervals(List<TraceEvent> events) {
+        Map<Integer, TraceEvent> previous = new HashMap<>();
+        List<Interval> intervals = new ArrayList<>();
+        for (TraceEvent event : events) {
+            TraceEvent last = previous.put(event.slot(), event);
+            if (last == null || last.role() != event.role()) {
+                continue;
+            }
+            if (last.event() == TraceRecorder.WAIT && event.event() == TraceRecorder.ENTER) {
+                intervals.add(new Interval(event.slot(), event.role(), true,
+                        last.timestamp(), event.timestamp() - last.timestamp()));
+            } else if (last.event() == TraceRecorder.ENTER && event.event() == TraceRecorder.LEAVE) {
+                intervals.add(new Interval(event.slot(), event.role(), false,
+                        last.timestamp(), event.timestamp() - last.timestamp()));
+            }
+        }
+        return intervals;
+    }
+
+    /**
+     * Builds a latency breakdown with count, mean and percentiles of the
+     * waiting and inside times of each role, in microseconds.
+     *
+     * @param events events ordered by timestamp
+     * @return printable report, one line per role and phase
+     */
+    public static String latencyReport(List<TraceEvent> events) {
+        List<Interval> intervals = intervals(events);
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-7s %-6s %8s %10s %10s %10s %10s%n",
+                "ROLE", "PHASE", "COUNT", "MEAN(us)", "P50(us)", "P99(us)", "MAX(us)"));
+        for (byte role = TraceRecorder.READER; role <= TraceRecorder.WRITER; role++) {
+            for (boolean waiting : new boolean[]{true, false}) {
+                byte currentRole = role;
+                long[] durations = intervals.stream()
+                        .filter(interval -> interval.role() == currentRole && interval.waiting() == waiting)
+                        .mapToLong(Interval::duration)
+                        .sorted()
+                        .toArray();
+                sb.append(String.format("%-7s %-6s %8d %10.1f %10.1f %10.1f %10.1f%n",
+                        ROLES[role], waiting ? "WAIT" : "INSIDE", durations.length,
+                        Arrays.stream(durations).average().orElse(0) / 1000.0,
+                        percentile(durations, 0.50) / 1000.0,
+                        percentile(durations, 0.99) / 1000.0,
+                        percentile(durations, 1.0) / 1000.0));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the trace as Chrome trace event JSON, one track per thread slot.
+     *
+     * @param events events ordered by timestamp
+     * @param output file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeChromeTrace(List<TraceEvent> events, Path output) throws IOException {
+        long origin = events.isEmpty() ? 0 : events.getFirst().timestamp();
+        try (BufferedWriter out = Files.newBufferedWriter(output)) {
+            out.write("{\"traceEvents\":[");
+            boolean first = true;
+            for (Interval interval : intervals(events)) {
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                out.write(String.format(Locale.ROOT,
+                        "{\"name\":\"%s %s\",\"ph\":\"X\",\"pid\":1,\"tid\":%d,\"ts\":%.3f,\"dur\":%.3f}",
+                        ROLES[interval.role()], interval.waiting() ? "WAIT" : "INSIDE", interval.slot(),
+                        (interval.start() - origin) / 1000.0, interval.duration() / 1000.0));
+            }
+            for (TraceEvent event : events) {
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                out.write(String.format(Locale.ROOT,
+                        "{\"name\":\"queue\",\"ph\":\"C\",\"pid\":1,\"ts\":%.3f,\"args\":{\"depth\":%d}}",
+                        (event.timestamp() - origin) / 1000.0, event.queueDepth()));
+            }
+            out.write("]}");
+        }
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * Prints the latency breakdown of a trace and optionally converts it to
+     * a Chrome trace file.
+     *
+     * @param args args[0] trace directory args[1] optional Chrome trace output file
+     */
+    public static void main(String[] args) {
+        try {
+            List<TraceEvent> events = read(Path.of(args[0]));
+            logger.info("{} events{}{}", events.size(), System.lineSeparator(), latencyReport(events));
+            if (args.length > 1) {
+                writeChromeTrace(events, Path.of(args[1]));
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            logger.error("Arguments must be a trace directory and an optional output file");
+        } catch (IOException e) {
+            logger.error("Cannot read trace", e);
+        }
+    }
+}
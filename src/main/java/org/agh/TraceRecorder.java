@@ -0,0 +1,222 @@
+package org.agh;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code TraceRecorder} class records {@link Library} activity as
+ * fixed-width binary records.
+ * <p>
+ * Every WAIT, ENTER and LEAVE becomes a {@value #RECORD_SIZE} byte record
+ * holding the {@link System#nanoTime()} timestamp, the id of the recording
+ * thread, the role, the event type and the waiting queue depth. Recording
+ * threads publish records into a shared lock-free ring and never touch a
+ * file: a slot is claimed with a single compare-and-set and published with a
+ * release store, so nothing is kept per thread and short-lived threads leave
+ * nothing behind. If the ring is full the record is dropped and counted.
+ * </p>
+ *
+ * <p>
+ * A background writer thread drains the ring every few milliseconds into a
+ * memory-mapped segment file, so events become visible in the trace shortly
+ * after they happen. Only the writer thread rolls over to a new file when a
+ * segment fills up and deletes the oldest one beyond the configured limit.
+ * </p>
+ *
+ * <p>
+ * Segment files are named {@code trace-NNNNNN.bin} and start with a
+ * {@value #HEADER_SIZE} byte header: magic number, record size and the number
+ * of records written so far. They are decoded by {@link TraceReader}.
+ * </p>
+ */
+public class TraceRecorder implements AutoCloseable {
+
+    public static final byte READER = 0;
+    public static final byte WRITER = 1;
+    public static final byte WAIT = 0;
+    public static final byte ENTER = 1;
+    public static final byte LEAVE = 2;
+
+    static final int MAGIC = 0x52575452;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 16;
+    static final int COUNT_OFFSET = 8;
+    static final int RING_RECORDS = 1 << 16;
+    private static final int MIN_SEGMENT_RECORDS = 64;
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final Logger logger = LoggerFactory.getLogger(TraceRecorder.class);
+
+    @Getter
+    private final Path directory;
+    @Getter
+    private final int segmentRecords;
+    @Getter
+    private final int maxSegments;
+    @Getter
+    private final LongAdder droppedRecords = new LongAdder();
+    private final long[] timestamps = new long[RING_RECORDS];
+    private final long[] details = new long[RING_RECORDS];
+    private final long[] sequences = new long[RING_RECORDS];
+    private final AtomicLong head = new AtomicLong();
+    private volatile long tail;
+    private volatile boolean closed;
+    private final Deque<Path> segments = new ArrayDeque<>();
+    private final Thread writer;
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+
+    /**
+     * Creates a new {@code TraceRecorder} writing into the given directory
+     * and starts its writer thread.
+     *
+     * @param directory      directory for the segment files, created if missing
+     * @param segmentRecords number of records per segment file
+     * @param maxSegments    number of most recent segment files to keep
+     * @throws IOException if the directory or the first segment cannot be created
+     */
+    public TraceRecorder(Path directory, int segmentRecords, int maxSegments) throws IOException {
+        if (segmentRecords < MIN_SEGMENT_RECORDS || maxSegments < 1) {
+            throw new IllegalArgumentException("Segment must hold at least " + MIN_SEGMENT_RECORDS
+                    + " records and at least one segment must be kept");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentRecords = segmentRecords;
+        this.maxSegments = maxSegments;
+        Arrays.fill(sequences, -1);
+        roll();
+        writer = Thread.ofPlatform().name("TRACE WRITER").daemon().unstarted(this::drainLoop);
+        writer.start();
+    }
+
+    /**
+     * Records one event of the calling thread.
+     *
+     * @param role       {@link #READER} or {@link #WRITER}
+     * @param event      {@link #WAIT}, {@link #ENTER} or {@link #LEAVE}
+     * @param queueDepth number of threads waiting at the time of the event
+     */
+    public void record(byte role, byte event, int queueDepth) {
+        long timestamp = System.nanoTime();
+        long detail = (Thread.currentThread().threadId() << 32)
+                | (role & 0xFFL) << 24
+                | (event & 0xFFL) << 16
+                | Math.min(queueDepth, Character.MAX_VALUE);
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail >= RING_RECORDS) {
+                droppedRecords.increment();
+                return;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+        int index = (int) sequence & (RING_RECORDS - 1);
+        timestamps[index] = timestamp;
+        details[index] = detail;
+        SEQUENCES.setRelease(sequences, index, sequence);
+    }
+
+    /**
+     * @return number of published records not yet written to a segment
+     */
+    long pendingRecords() {
+        return head.get() - tail;
+    }
+
+    /**
+     * Writes every published record and stops recording.
+     * <p>
+     * Must be called once the recording threads are finished; records
+     * published afterwards are ignored.
+     * </p>
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segment.force();
+        if (droppedRecords.sum() > 0) {
+            logger.warn("Trace ring was full, {} records were dropped", droppedRecords.sum());
+        }
+    }
+
+    /**
+     * Writer loop: drains the ring until the recorder is closed, then drains
+     * it one last time.
+     */
+    private void drainLoop() {
+        try {
+            while (!closed) {
+                if (drain() == 0) {
+                    LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+                }
+            }
+            drain();
+        } catch (IOException e) {
+            logger.error("Cannot roll trace segment, tracing stopped", e);
+        }
+    }
+
+    /**
+     * Copies published records into the mapped segment in sequence order,
+     * rolling over to new segments as they fill up, and frees their slots.
+     *
+     * @return number of records written
+     */
+    private int drain() throws IOException {
+        long next = tail;
+        int written = 0;
+        while (true) {
+            int index = (int) next & (RING_RECORDS - 1);
+            if ((long) SEQUENCES.getAcquire(sequences, index) != next) {
+                break;
+            }
+            if (!segment.hasRemaining()) {
+                roll();
+            }
+            segment.putLong(timestamps[index]).putLong(details[index]);
+            segment.putLong(COUNT_OFFSET, (long) (segment.position() - HEADER_SIZE) / RECORD_SIZE);
+            next++;
+            written++;
+            tail = next;
+        }
+        return written;
+    }
+
+    private void roll() throws IOException {
+        Path file = directory.resolve(String.format("trace-%06d.bin", segmentIndex++));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) segmentRecords * RECORD_SIZE);
+        }
+        segment.order(ByteOrder.BIG_ENDIAN);
+        segment.putInt(MAGIC).putInt(RECORD_SIZE).putLong(0);
+        segments.addLast(file);
+        while (segments.size() > maxSegments) {
+            Files.deleteIfExists(segments.removeFirst());
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package org.agh;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * The {@code WriteAheadLog} class persists write records with group commit.
+ * <p>
+ * Every record is {@code [int length][long sequence][int crc][payload]}; the
+ * CRC-32C covers the sequence number and the payload. {@link #append} only
+ * copies the record into an in-memory batch and is cheap enough to be called
+ * inside the exclusive section of a writer. A dedicated flusher thread writes
+ * the collected batch to the {@link FileChannel} and makes it durable with a
+ * single {@link FileChannel#force}, while writers of the following exclusive
+ * sections keep appending to the next batch. A writer calls
+ * {@link #awaitDurable} after leaving the library and is acknowledged once its
+ * batch is on disk.
+ * </p>
+ *
+ * <p>
+ * The file I/O is done by the flusher thread only, because interrupting a
+ * thread blocked in a {@link FileChannel} closes the channel. Opening a log
+ * replays the existing file and truncates a torn tail left by a crash, see
+ * {@link #replay}; opening a new file also forces its directory, so the
+ * file itself survives a crash.
+ * </p>
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+    static final int HEADER_SIZE = 16;
+    static final int MAX_PAYLOAD = 1 << 24;
+    private static final int INITIAL_BATCH = 64 * 1024;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    private final CRC32C crc = new CRC32C();
+    private final ByteBuffer sequenceBytes = ByteBuffer.allocate(Long.BYTES);
+    private final Thread flusher;
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BATCH);
+    private ByteBuffer flushing = ByteBuffer.allocate(INITIAL_BATCH);
+    /**
+     * The sequence counters are only written with the lock held; they are
+     * volatile so that the getters can read them without it.
+     */
+    @Getter
+    private volatile long appendedSequence;
+    @Getter
+    private volatile long durableSequence;
+    @Getter
+    private volatile long forces;
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * A record read back from the log.
+     *
+     * @param sequence sequence number assigned by {@link #append}
+     * @param payload  the appended bytes
+     */
+    public record Entry(long sequence, byte[] payload) {
+    }
+
+    /**
+     * Opens the log, recovering the records already in the file, and starts
+     * the flusher thread. New records continue the sequence of the file.
+     *
+     * @param file the log file, created if missing
+     * @throws IOException if the file cannot be opened or recovered
+     */
+    public WriteAheadLog(Path file) throws IOException {
+        this.file = file;
+        boolean created = !Files.exists(file);
+        long[] last = {0};
+        replay(file, entry -> last[0] = entry.sequence());
+        appendedSequence = last[0];
+        durableSequence = last[0];
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        if (created) {
+            forceDirectory(file.toAbsolutePath().getParent());
+        }
+        flusher = Thread.ofPlatform().name("WAL FLUSHER").daemon().start(this::flushLoop);
+    }
+
+    /**
+     * Appends a record to the current batch without waiting for the disk.
+     *
+     * @param payload the record content
+     * @return the sequence number to pass to {@link #awaitDurable}
+     * @throws IOException if the log has failed or is closed
+     */
+    public long append(byte[] payload) throws IOException {
+        if (payload.length > MAX_PAYLOAD) {
+            throw new IllegalArgumentException("Payload must not exceed " + MAX_PAYLOAD + " bytes");
+        }
+        lock.lock();
+        try {
+            checkUsable();
+            if (closed) {
+                throw new IOException("Write-ahead log is closed");
+            }
+            long sequence = ++appendedSequence;
+            if (pending.remaining() < HEADER_SIZE + payload.length) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2,
+                        pending.position() + HEADER_SIZE + payload.length));
+                pending = larger.put(pending.flip());
+            }
+            pending.putInt(payload.length)
+                    .putLong(sequence)
+                    .putInt(checksum(sequence, payload))
+                    .put(payload);
+            appended.signal();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the record with the given sequence number is durable.
+     *
+     * @param sequence a sequence number returned by {@link #append}
+     * @throws IOException          if writing or forcing the batch failed
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void awaitDurable(long sequence) throws IOException, InterruptedException {
+        if (durableSequence >= sequence) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (sequence > appendedSequence) {
+                throw new IllegalArgumentException("Sequence " + sequence + " was not appended");
+            }
+            while (durableSequence < sequence) {
+                checkUsable();
+                durable.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes every appended record durable, stops the flusher and closes the file.
+     *
+     * @throws IOException if the last batch could not be made durable
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            appended.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        lock.lock();
+        try {
+            checkUsable();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flusher loop: swaps the pending batch with the flushed one, writes and
+     * forces it without holding the lock, and acknowledges its writers.
+     */
+    private void flushLoop() {
+        lock.lock();
+        try {
+            while (true) {
+                while (pending.position() == 0 && !closed) {
+                    appended.awaitUninterruptibly();
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+                ByteBuffer batch = pending;
+                pending = flushing;
+                flushing = batch;
+                long batchEnd = appendedSequence;
+                lock.unlock();
+                IOException error = null;
+                try {
+                    batch.flip();
+                    while (batch.hasRemaining()) {
+                        channel.write(batch);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    batch.clear();
+                    lock.lock();
+                }
+                if (error != null) {
+                    failure = error;
+                    durable.signalAll();
+                    return;
+                }
+                durableSequence = batchEnd;
+                forces++;
+                durable.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must be called while holding the lock.
+     */
+    private void checkUsable() throws IOException {
+        if (failure != null) {
+            throw new IOException("Write-ahead log failed", failure);
+        }
+    }
+
+    /**
+     * Must be called while holding the lock.
+     */
+    private int checksum(long sequence, byte[] payload) {
+        crc.reset();
+        sequenceBytes.clear();
+        crc.update(sequenceBytes.putLong(0, sequence));
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads every intact record of a log file in order.
+     * <p>
+     * Reading stops at the first record that is incomplete, fails its
+     * checksum or breaks the sequence, which is what a crash in the middle of
+     * a write leaves behind. The file is truncated to the last intact record,
+     * so later appends continue a valid log.
+     * </p>
+     *
+     * @param file     the log file; a missing file holds no records
+     * @param consumer receives the intact records
+     * @return number of intact records
+     * @throws IOException if the file cannot be read or truncated
+     */
+    public static long replay(Path file, Consumer<Entry> consumer) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long offset = 0;
+            long count = 0;
+            long previous = -1;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            CRC32C check = new CRC32C();
+            while (size - offset >= HEADER_SIZE) {
+                header.clear();
+                readFully(in, header, offset);
+                int length = header.getInt(0);
+                long sequence = header.getLong(4);
+                if (length < 0 || length > MAX_PAYLOAD || size - offset - HEADER_SIZE < length
+                        || (previous >= 0 && sequence != previous + 1)) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(in, payload, offset + HEADER_SIZE);
+                check.reset();
+                check.update(header.array(), 4, Long.BYTES);
+                check.update(payload.array());
+                if ((int) check.getValue() != header.getInt(12)) {
+                    break;
+                }
+                consumer.accept(new Entry(sequence, payload.array()));
+                previous = sequence;
+                offset += HEADER_SIZE + length;
+                count++;
+            }
+            if (offset < size) {
+                in.truncate(offset);
+                in.force(true);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Makes the directory entry of a new log file durable. Forcing the file
+     * alone does not persist its name, so acknowledged records of a fresh
+     * log could otherwise vanish with the file after a crash.
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of log");
+            }
+        }
+    }
+}
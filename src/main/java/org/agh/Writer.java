@@ -4,6 +4,10 @@ package org.agh;
 import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
 import static java.lang.Math.abs;
 
 /**
@@ -19,21 +23,41 @@ import static java.lang.Math.abs;
 @Getter
 public class Writer implements Runnable {
     private static final Logger logger = LoggerFactory.getLogger(Writer.class);
-    private final Library library;
+    private final LibraryAccess library;
     private final int timeStamp;
+    private final WriteAheadLog writeAheadLog;
     /**
      * Creates a new {@code Writer} instance.
      *
-     * @param library   the {@link Library} instance used for writing operations
+     * @param library   the {@link LibraryAccess} instance used for writing operations
      * @param sleepTime the thread sleep time in milliseconds; values greater
      *                  than 3000 ms are capped at 3000 ms
      */
-    public Writer(Library library, int sleepTime) {
+    public Writer(LibraryAccess library, int sleepTime) {
+        this(library, sleepTime, null);
+    }
+
+    /**
+     * Creates a new durable {@code Writer} instance.
+     * <p>
+     * Every write appends a record naming the writer to the log inside the
+     * exclusive section. The writer then leaves the library and waits until
+     * the batch holding its record is durable, so the fsync is shared with
+     * the writers that follow instead of extending the exclusive section.
+     * </p>
+     *
+     * @param library       the {@link LibraryAccess} instance used for writing operations
+     * @param sleepTime     the thread sleep time in milliseconds; values greater
+     *                      than 3000 ms are capped at 3000 ms
+     * @param writeAheadLog the log persisting every write, or {@code null}
+     */
+    public Writer(LibraryAccess library, int sleepTime, WriteAheadLog writeAheadLog) {
         this.library = library;
         if (sleepTime > 3000) {
             sleepTime = 3000;
         }
         timeStamp = abs(sleepTime);
+        this.writeAheadLog = writeAheadLog;
     }
 
     /**
@@ -46,20 +70,50 @@ public class Writer implements Runnable {
      *
      * <p>
      * If the thread is interrupted during sleep, the interruption flag
-     * is restored and the error is logged.
+     * is restored and the error is logged. A durable writer stops when the
+     * log fails.
      * </p>
      */
     @Override
     public void run() {
         while (!Thread.currentThread().isInterrupted()) {
             try {
-                library.startWriting();
-                Thread.sleep(timeStamp);
-                library.stopWriting();
+                if (!operate()) {
+                    return;
+                }
             } catch (InterruptedException e) {
                 logger.error("ERROR");
                 Thread.currentThread().interrupt();
             }
         }
     }
+
+    /**
+     * Performs a single writing operation.
+     *
+     * @return {@code false} if the write could not be persisted and the
+     *         writer must stop
+     * @throws InterruptedException if the thread is interrupted while waiting or writing
+     */
+    boolean operate() throws InterruptedException {
+        try {
+            library.startWriting();
+            Thread.sleep(timeStamp);
+            long sequence = 0;
+            try {
+                if (writeAheadLog != null) {
+                    sequence = writeAheadLog.append(Thread.currentThread().getName().getBytes(StandardCharsets.UTF_8));
+                }
+            } finally {
+                library.stopWriting();
+            }
+            if (writeAheadLog != null) {
+                writeAheadLog.awaitDurable(sequence);
+            }
+            return true;
+        } catch (IOException e) {
+            logger.error("Cannot persist write", e);
+            return false;
+        }
+    }
 }
@@ -0,0 +1,286 @@
+package org.agh;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link CohortLock} class and the cohort mode of {@link Library}.
+ *
+ * <p>
+ * The class also contains a benchmark comparing writer handoff latency of
+ * the cohort mode with the plain global fair semaphore.
+ * </p>
+ */
+class CohortLockTest {
+    private static final org.slf4j.Logger logger = LoggerFactory.getLogger(CohortLockTest.class);
+
+    /**
+     * Access is handed locally at most the configured number of times
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void localHandoffsAreBounded() throws InterruptedException {
+        assertArrayEquals(new long[]{1, 2}, handoffs(2));
+        assertArrayEquals(new long[]{2, 1}, handoffs(1));
+        assertArrayEquals(new long[]{3, 0}, handoffs(0));
+    }
+
+    /**
+     * Three writers of one group enter one after another.
+     *
+     * @return global acquisitions and local handoffs
+     */
+    private static long[] handoffs(int maxLocalHandoffs) throws InterruptedException {
+        Library library = new Library();
+        library.enableCohortMode(1, maxLocalHandoffs, thread -> 0);
+        library.startWriting();
+
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            writers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    library.startWriting();
+                    library.stopWriting();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            int queued = i + 1;
+            await().atMost(1, TimeUnit.SECONDS)
+                    .until(() -> library.getWaitingQueueCount() == queued);
+        }
+        await().atMost(1, TimeUnit.SECONDS).until(() -> writers.stream()
+                .allMatch(thread -> thread.getState() == Thread.State.WAITING));
+        library.stopWriting();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        CohortLock cohortLock = library.getCohortLock();
+        assertEquals(Library.DEFAULT_CAPACITY, library.getSemaphore().availablePermits());
+        return new long[]{cohortLock.getGlobalAcquisitions().sum(), cohortLock.getLocalHandoffs().sum()};
+    }
+
+    /**
+     * A writer interrupted while queued locally does not strand the global permits
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void interruptedWriterGivesPermitsBack() throws InterruptedException {
+        Library library = new Library();
+        library.enableCohortMode(1, 10, thread -> 0);
+        library.startWriting();
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        Thread waiting = Thread.ofPlatform().start(() -> {
+            try {
+                library.startWriting();
+                library.stopWriting();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+        });
+        await().atMost(1, TimeUnit.SECONDS)
+                .until(() -> waiting.getState() == Thread.State.WAITING);
+        waiting.interrupt();
+        library.stopWriting();
+        waiting.join();
+
+        assertTrue(interrupted.get());
+        assertEquals(0, library.getWaitingQueueCount());
+        assertEquals(Library.DEFAULT_CAPACITY, library.getSemaphore().availablePermits());
+    }
+
+    /**
+     * A queued writer can be interrupted while the holder is still inside;
+     * access is then handed to the next queued writer
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void queuedWriterIsInterruptibleWhileHolderInside() throws InterruptedException {
+        Library library = new Library();
+        library.enableCohortMode(1, 10, thread -> 0);
+        library.startWriting();
+        AtomicBoolean interrupted = new AtomicBoolean();
+        AtomicBoolean entered = new AtomicBoolean();
+
+        Thread cancelled = Thread.ofPlatform().start(() -> {
+            try {
+                library.startWriting();
+                library.stopWriting();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+        });
+        await().atMost(1, TimeUnit.SECONDS)
+                .until(() -> library.getWaitingQueueCount() == 1 && cancelled.getState() == Thread.State.WAITING);
+        Thread next = Thread.ofPlatform().start(() -> {
+            try {
+                library.startWriting();
+                entered.set(true);
+                library.stopWriting();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        await().atMost(1, TimeUnit.SECONDS)
+                .until(() -> library.getWaitingQueueCount() == 2 && next.getState() == Thread.State.WAITING);
+
+        cancelled.interrupt();
+        cancelled.join(1000);
+
+        assertFalse(cancelled.isAlive());
+        assertTrue(interrupted.get());
+        assertEquals(1, library.getWaitingQueueCount());
+        assertEquals(1, library.snapshot().activeWriters());
+        assertEquals(0, library.getSemaphore().availablePermits());
+
+        library.stopWriting();
+        next.join();
+
+        assertTrue(entered.get());
+        assertEquals(1, library.getCohortLock().getLocalHandoffs().sum());
+        assertEquals(Library.DEFAULT_CAPACITY, library.getSemaphore().availablePermits());
+    }
+
+    /**
+     * Writers of several groups and readers never overlap
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void cohortModeKeepsWritersExclusive() throws InterruptedException {
+        Library library = quietLibrary();
+        library.enableCohortMode(2, 4, thread -> (int) thread.threadId());
+        AtomicInteger writersInside = new AtomicInteger();
+        AtomicInteger readersInside = new AtomicInteger();
+        AtomicBoolean violated = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(6);
+
+        for (int i = 0; i < 6; i++) {
+            boolean writer = i < 4;
+            Thread.ofPlatform().start(() -> {
+                try {
+                    for (int round = 0; round < 500; round++) {
+                        if (writer) {
+                            library.startWriting();
+                            if (writersInside.incrementAndGet() != 1 || readersInside.get() != 0) {
+                                violated.set(true);
+                            }
+                            LockSupport.parkNanos(50_000);
+                            writersInside.decrementAndGet();
+                            library.stopWriting();
+                        } else {
+                            library.startReading();
+                            readersInside.incrementAndGet();
+                            if (writersInside.get() != 0) {
+                                violated.set(true);
+                            }
+                            readersInside.decrementAndGet();
+                            library.stopReading();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(8, TimeUnit.SECONDS));
+        assertFalse(violated.get());
+        assertTrue(library.getCohortLock().getLocalHandoffs().sum() > 0);
+    }
+
+    /**
+     * Handoff latency benchmark: time from one writer starting to leave until
+     * the next writer is inside, with the global fair semaphore and with the
+     * cohort mode.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    void handoffLatencyBenchmark() throws InterruptedException {
+        Logger libraryLogger = (Logger) LoggerFactory.getLogger(Library.class);
+        Level oldLevel = libraryLogger.getLevel();
+        try {
+            libraryLogger.setLevel(Level.WARN);
+            Library global = quietLibrary();
+            double globalLatency = handoffLatency(global);
+
+            Library cohort = quietLibrary();
+            cohort.enableCohortMode(2, 16, thread -> (int) thread.threadId());
+            double cohortLatency = handoffLatency(cohort);
+
+            logger.info("Writer handoff latency: global fair semaphore {} ns, cohort mode {} ns ({} local handoffs)",
+                    String.format("%.0f", globalLatency), String.format("%.0f", cohortLatency),
+                    cohort.getCohortLock().getLocalHandoffs().sum());
+            assertTrue(globalLatency > 0);
+            assertTrue(cohortLatency > 0);
+        } finally {
+            libraryLogger.setLevel(oldLevel);
+        }
+    }
+
+    private static double handoffLatency(Library library) throws InterruptedException {
+        int writers = 4;
+        int rounds = 5_000;
+        AtomicLong lastRelease = new AtomicLong();
+        LongAdder total = new LongAdder();
+        LongAdder handoffs = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                try {
+                    for (int round = 0; round < rounds; round++) {
+                        library.startWriting();
+                        long released = lastRelease.get();
+                        if (released != 0) {
+                            total.add(System.nanoTime() - released);
+                            handoffs.increment();
+                        }
+                        lastRelease.set(System.nanoTime());
+                        library.stopWriting();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return (double) total.sum() / handoffs.sum();
+    }
+
+    private static Library quietLibrary() {
+        Library library = new Library();
+        library.setDetailedState(false);
+        return library;
+    }
+}
@@ -0,0 +1,66 @@
+package org.agh;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link ExecutionStrategy} enum.
+ */
+class ExecutionStrategyTest {
+
+    /**
+     * Every strategy runs submitted tasks
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    void everyStrategyRunsTasks() throws InterruptedException {
+        for (ExecutionStrategy strategy : ExecutionStrategy.values()) {
+            ExecutorService executor = strategy.newExecutor();
+            CountDownLatch done = new CountDownLatch(3);
+            for (int i = 0; i < 3; i++) {
+                executor.submit(done::countDown);
+            }
+            assertTrue(done.await(2, TimeUnit.SECONDS), strategy.name());
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Virtual and platform strategies create the matching kind of thread
+     *
+     * @throws Exception
+     */
+    @Test
+    void threadKindMatchesStrategy() throws Exception {
+        ExecutorService virtual = ExecutionStrategy.VIRTUAL.newExecutor();
+        ExecutorService platform = ExecutionStrategy.PLATFORM.newExecutor();
+
+        assertTrue(virtual.submit(() -> Thread.currentThread().isVirtual()).get());
+        assertFalse(platform.submit(() -> Thread.currentThread().isVirtual()).get());
+
+        virtual.shutdown();
+        platform.shutdown();
+    }
+
+    /**
+     * Fork join strategy is bounded by the number of processors
+     */
+    @Test
+    void forkJoinIsBounded() throws Exception {
+        ExecutorService executor = ExecutionStrategy.FORK_JOIN.newExecutor();
+
+        assertEquals(Runtime.getRuntime().availableProcessors(), ((ForkJoinPool) executor).getParallelism());
+        AtomicBoolean ran = new AtomicBoolean();
+        executor.submit(() -> ran.set(true)).get();
+        assertTrue(ran.get());
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,116 @@
+package org.agh;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link LibraryClient} class verifying that the remote
+ * acquisition API behaves like a local {@link Library}.
+ */
+class LibraryClientTest {
+    private Library library;
+    private LibraryServer server;
+    private LibraryClient client;
+
+    @BeforeEach
+    void setup() throws IOException {
+        library = new Library();
+        server = new LibraryServer(library, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        client = new LibraryClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    /**
+     * A remote writer excludes a remote reader until it stops writing
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void writerExcludesReader() throws InterruptedException {
+        client.startWriting();
+        assertTrue(library.isWriterInside());
+
+        CountDownLatch readerEntered = new CountDownLatch(1);
+        Thread reader = Thread.ofVirtual().start(() -> {
+            try {
+                client.startReading();
+                readerEntered.countDown();
+                client.stopReading();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        await().atMost(1, TimeUnit.SECONDS)
+                .until(() -> library.getWaitingQueueCount() == 1);
+        assertEquals(1, readerEntered.getCount());
+
+        client.stopWriting();
+
+        assertTrue(readerEntered.await(2, TimeUnit.SECONDS));
+        reader.join();
+        await().atMost(1, TimeUnit.SECONDS)
+                .until(() -> library.getActiveUsersCount() == 0);
+    }
+
+    /**
+     * A thread may hold only one lease and can release only what it holds
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void leaseOwnershipIsPerThread() throws InterruptedException {
+        assertThrows(IllegalStateException.class, client::stopReading);
+
+        client.startReading();
+        assertThrows(IllegalStateException.class, client::startReading);
+        client.renew();
+        client.stopReading();
+
+        assertThrows(IllegalStateException.class, client::renew);
+    }
+
+    /**
+     * Reader tasks run unchanged against the remote library
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void readerTaskRunsAgainstClient() throws InterruptedException {
+        Thread readerThread = Thread.ofVirtual().start(new Reader(client, 1));
+
+        await().atMost(2, TimeUnit.SECONDS)
+                .until(() -> library.getActiveUsersCount() == 1);
+
+        readerThread.interrupt();
+        readerThread.join(2000);
+        assertFalse(readerThread.isAlive(), "Thread should die");
+    }
+
+    /**
+     * Calls fail once the connection is closed
+     */
+    @Test
+    void closedClientRejectsCalls() {
+        client.close();
+
+        assertThrows(IllegalStateException.class, client::startWriting);
+    }
+}
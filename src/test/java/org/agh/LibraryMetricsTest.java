@@ -0,0 +1,102 @@
+package org.agh;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link LibraryMetrics} class.
+ */
+class LibraryMetricsTest {
+    private Library library;
+    private LibraryMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        library = new Library();
+        library.setDetailedState(false);
+        metrics = new LibraryMetrics();
+        library.setMetrics(metrics);
+    }
+
+    /**
+     * Durations land in the first bucket whose bound is not exceeded
+     */
+    @Test
+    void durationsAreBucketedByUpperBound() {
+        LibraryMetrics.Histogram histogram = metrics.getWaitTimes()[TraceRecorder.READER];
+        histogram.record(LibraryMetrics.BUCKET_BOUNDS[0]);
+        histogram.record(LibraryMetrics.BUCKET_BOUNDS[0] + 1);
+        histogram.record(TimeUnit.MINUTES.toNanos(1));
+
+        assertEquals(1, histogram.getBuckets()[0].sum());
+        assertEquals(1, histogram.getBuckets()[1].sum());
+        assertEquals(1, histogram.getBuckets()[LibraryMetrics.BUCKET_BOUNDS.length].sum());
+        assertEquals(LibraryMetrics.BUCKET_BOUNDS[0] * 2 + 1 + TimeUnit.MINUTES.toNanos(1),
+                histogram.getSumNanos().sum());
+    }
+
+    /**
+     * Reading and writing are counted per role and their hold time is measured
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void acquisitionsAndHoldTimesAreRecordedPerRole() throws InterruptedException {
+        library.startReading();
+        Thread.sleep(20);
+        library.stopReading();
+        library.startWriting();
+        library.stopWriting();
+        library.startWriting();
+        library.stopWriting();
+
+        assertEquals(1, metrics.getAcquisitions()[TraceRecorder.READER].sum());
+        assertEquals(2, metrics.getAcquisitions()[TraceRecorder.WRITER].sum());
+        assertEquals(2, count(metrics.getWaitTimes()[TraceRecorder.WRITER]));
+        assertEquals(1, count(metrics.getHoldTimes()[TraceRecorder.READER]));
+        assertTrue(metrics.getHoldTimes()[TraceRecorder.READER].getSumNanos().sum()
+                >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    /**
+     * A reader blocked by a writer records the time it waited
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void blockedReaderRecordsWaitTime() throws InterruptedException {
+        library.startWriting();
+        Thread reader = Thread.ofVirtual().start(() -> {
+            try {
+                library.startReading();
+                library.stopReading();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        await().atMost(1, TimeUnit.SECONDS).until(() -> library.getWaitingQueueCount() == 1);
+        Thread.sleep(50);
+        library.stopWriting();
+        reader.join();
+
+        assertTrue(metrics.getWaitTimes()[TraceRecorder.READER].getSumNanos().sum()
+                >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    private static long count(LibraryMetrics.Histogram histogram) {
+        long count = 0;
+        for (LongAdder bucket : histogram.getBuckets()) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+}
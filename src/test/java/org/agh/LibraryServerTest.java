@@ -0,0 +1,250 @@
+package org.agh;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link LibraryServer} class run entirely on the loopback
+ * interface.
+ *
+ * <p>
+ * Besides lease handling, the class contains a throughput benchmark with
+ * more than a thousand concurrent client connections.
+ * </p>
+ */
+class LibraryServerTest {
+    private static final org.slf4j.Logger logger = LoggerFactory.getLogger(LibraryServerTest.class);
+    private Library library;
+    private LibraryServer server;
+
+    private InetSocketAddress start(long leaseMillis) throws IOException {
+        library = new Library();
+        server = new LibraryServer(library, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), leaseMillis);
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Several requests pipelined in one write are all answered
+     *
+     * @throws IOException
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void pipelinedRequestsAreAnswered() throws IOException {
+        InetSocketAddress address = start(0);
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            for (int token = 1; token <= 3; token++) {
+                out.writeByte(LibraryProtocol.ACQUIRE_READ);
+                out.writeInt(token);
+            }
+            out.writeByte(LibraryProtocol.RENEW);
+            out.writeInt(42);
+            out.flush();
+
+            int granted = 0;
+            int unknown = 0;
+            for (int i = 0; i < 4; i++) {
+                byte status = in.readByte();
+                in.readInt();
+                if (status == LibraryProtocol.GRANTED) {
+                    granted++;
+                } else if (status == LibraryProtocol.UNKNOWN_LEASE) {
+                    unknown++;
+                }
+            }
+            assertEquals(3, granted);
+            assertEquals(1, unknown);
+            assertEquals(3, library.getActiveUsersCount());
+        }
+    }
+
+    /**
+     * Unrenewed leases are released by the server
+     *
+     * @throws Exception
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void expiredLeaseIsReleased() throws Exception {
+        InetSocketAddress address = start(100);
+        try (LibraryClient client = new LibraryClient(address)) {
+            client.startWriting();
+            assertTrue(library.isWriterInside());
+
+            await().atMost(2, TimeUnit.SECONDS)
+                    .until(() -> !library.isWriterInside());
+
+            assertThrows(IllegalStateException.class, client::stopWriting);
+        }
+    }
+
+    /**
+     * Closing a connection releases every lease it held
+     *
+     * @throws Exception
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void disconnectReleasesLeases() throws Exception {
+        InetSocketAddress address = start(0);
+        LibraryClient client = new LibraryClient(address);
+        client.startWriting();
+        assertTrue(library.isWriterInside());
+
+        client.close();
+
+        await().atMost(2, TimeUnit.SECONDS)
+                .until(() -> library.getActiveUsersCount() == 0);
+    }
+
+    /**
+     * A lease still waiting for admission is cancelled when its connection
+     * closes and never takes the library afterwards
+     *
+     * @throws Exception
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void disconnectCancelsWaitingLease() throws Exception {
+        InetSocketAddress address = start(0);
+        library.startWriting();
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeByte(LibraryProtocol.ACQUIRE_WRITE);
+            out.writeInt(1);
+            out.flush();
+            await().atMost(2, TimeUnit.SECONDS)
+                    .until(() -> library.getWaitingQueueCount() == 1);
+        }
+
+        await().atMost(2, TimeUnit.SECONDS)
+                .until(() -> library.getWaitingQueueCount() == 0);
+        library.stopWriting();
+        assertEquals(Library.DEFAULT_CAPACITY, library.getSemaphore().availablePermits());
+        assertEquals(0, library.getActiveUsersCount());
+    }
+
+    /**
+     * A client interrupted while waiting releases its lease, and the lease
+     * thread leaves the queue instead of taking the library later
+     *
+     * @throws Exception
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void clientInterruptCancelsWaitingLease() throws Exception {
+        InetSocketAddress address = start(0);
+        LibraryMetrics metrics = new LibraryMetrics();
+        library.setMetrics(metrics);
+        library.startWriting();
+        AtomicBoolean interrupted = new AtomicBoolean();
+        try (LibraryClient client = new LibraryClient(address)) {
+            Thread waiting = Thread.ofPlatform().start(() -> {
+                try {
+                    client.startWriting();
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                }
+            });
+            await().atMost(2, TimeUnit.SECONDS)
+                    .until(() -> library.snapshot().waitingWriters() == 1);
+            waiting.interrupt();
+            waiting.join();
+
+            assertTrue(interrupted.get());
+            await().atMost(2, TimeUnit.SECONDS)
+                    .until(() -> library.snapshot().waitingWriters() == 0);
+        }
+        library.stopWriting();
+        library.startReading();
+        library.stopReading();
+
+        assertEquals(1, metrics.getAcquisitions()[TraceRecorder.WRITER].sum());
+        assertEquals(Library.DEFAULT_CAPACITY, library.getSemaphore().availablePermits());
+    }
+
+    /**
+     * Throughput benchmark: 1024 clients, each on its own connection,
+     * repeatedly acquire and release shared and exclusive leases.
+     *
+     * @throws Exception
+     */
+    @Test
+    @Timeout(value = 120, unit = TimeUnit.SECONDS)
+    void throughputWithThousandClients() throws Exception {
+        int clients = 1024;
+        int operations = 10;
+        Logger libraryLogger = (Logger) LoggerFactory.getLogger(Library.class);
+        Level oldLevel = libraryLogger.getLevel();
+        libraryLogger.setLevel(Level.WARN);
+        try {
+            InetSocketAddress address = start(0);
+            LongAdder completed = new LongAdder();
+            List<Future<?>> results = new ArrayList<>();
+            long begin = System.nanoTime();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < clients; i++) {
+                    boolean writer = i % 16 == 0;
+                    results.add(executor.submit(() -> {
+                        try (LibraryClient client = new LibraryClient(address)) {
+                            for (int op = 0; op < operations; op++) {
+                                if (writer) {
+                                    client.startWriting();
+                                    client.stopWriting();
+                                } else {
+                                    client.startReading();
+                                    client.stopReading();
+                                }
+                                completed.increment();
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> result : results) {
+                    result.get();
+                }
+            }
+            double seconds = (System.nanoTime() - begin) / 1e9;
+            logger.info("{} clients completed {} acquisitions in {} s ({} ops/s)",
+                    clients, completed.sum(), String.format("%.2f", seconds),
+                    String.format("%.0f", completed.sum() / seconds));
+
+            assertEquals((long) clients * operations, completed.sum());
+            await().atMost(2, TimeUnit.SECONDS)
+                    .until(() -> library.getActiveUsersCount() == 0);
+        } finally {
+            libraryLogger.setLevel(oldLevel);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package org.agh;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link LibrarySimulator} class.
+ *
+ * <p>
+ * Besides checking the model on scenarios with known answers, the
+ * conformance tests run the real {@link Library} with sleeping virtual
+ * threads and compare completions per role, starvation and the mean wait
+ * with the simulated ones, and replay a simulated arrival order to compare
+ * the order of admission.
+ * </p>
+ */
+class LibrarySimulatorTest {
+
+    /**
+     * Same seed gives the same result
+     */
+    @Test
+    void simulationIsReproducible() {
+        LibrarySimulator.Distribution hold = LibrarySimulator.Distribution.exponential(15);
+        LibrarySimulator.Scenario scenario = new LibrarySimulator.Scenario(3, 12, hold, hold,
+                LibrarySimulator.Distribution.uniform(0, 5), 60_000);
+
+        assertEquals(new LibrarySimulator(7).simulate(scenario), new LibrarySimulator(7).simulate(scenario));
+        assertNotEquals(new LibrarySimulator(7).simulate(scenario), new LibrarySimulator(8).simulate(scenario));
+    }
+
+    /**
+     * Readers are limited by capacity: 5 readers per hold time
+     */
+    @Test
+    void readersAreLimitedByCapacity() {
+        LibrarySimulator.Result result = new LibrarySimulator(1).simulate(LibrarySimulator.Scenario.of(0, 10, 10, 1000));
+
+        assertEquals(500, result.completedReads());
+        assertEquals(500.0, result.throughput(), 1e-9);
+        assertEquals(10.0, result.p50Wait(), 1e-9);
+        assertEquals(0, result.starved());
+        assertEquals(1.0, result.fairness(), 1e-9);
+    }
+
+    /**
+     * Weighted readers share a custom capacity: 3 readers of weight 2 per hold time
+     */
+    @Test
+    void weightedReadersShareCapacity() {
+        LibrarySimulator.Distribution hold = LibrarySimulator.Distribution.constant(10);
+        LibrarySimulator.Scenario scenario = new LibrarySimulator.Scenario(0, 10, hold, hold,
+                LibrarySimulator.Distribution.constant(0), 1000, 6, 2);
+
+        LibrarySimulator.Result result = new LibrarySimulator(1).simulate(scenario);
+
+        assertEquals(300, result.completedReads());
+        assertThrows(IllegalArgumentException.class, () -> new LibrarySimulator.Scenario(0, 10, hold, hold,
+                LibrarySimulator.Distribution.constant(0), 1000, 6, 7));
+    }
+
+    /**
+     * Writers are exclusive: one writer per hold time
+     */
+    @Test
+    void writersAreExclusive() {
+        LibrarySimulator.Result result = new LibrarySimulator(1).simulate(LibrarySimulator.Scenario.of(2, 0, 10, 1000));
+
+        assertEquals(100, result.completedWrites());
+        assertEquals(10.0, result.maxWait(), 1e-9);
+    }
+
+    /**
+     * Waiting participants are counted as starved and in the maximal wait
+     */
+    @Test
+    void starvationIsReported() {
+        LibrarySimulator.Result result = new LibrarySimulator(1).simulate(LibrarySimulator.Scenario.of(3, 0, 3000, 5000));
+
+        assertEquals(1, result.completedWrites());
+        assertEquals(2, result.starved());
+        assertEquals(5000.0, result.maxWait(), 1e-9);
+    }
+
+    /**
+     * Real engine matches the model for readers only
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    void conformsToLibraryWithReaders() throws InterruptedException {
+        assertConforms(0, 7, 20);
+    }
+
+    /**
+     * Real engine matches the model for a mixed workload
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    void conformsToLibraryWithReadersAndWriters() throws InterruptedException {
+        assertConforms(2, 4, 20);
+    }
+
+    /**
+     * Real engine admits a fixed arrival order exactly like the model: the
+     * same sequence of roles and the same waits
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    void admissionOrderMatchesLibrary() throws InterruptedException {
+        int hold = 200;
+        LibrarySimulator.Distribution holdTime = LibrarySimulator.Distribution.constant(hold);
+        LibrarySimulator.Scenario scenario = new LibrarySimulator.Scenario(2, 6, holdTime, holdTime,
+                LibrarySimulator.Distribution.constant(60_000), 5_000);
+        List<Boolean> arrivals = new ArrayList<>();
+        List<Boolean> expectedOrder = new ArrayList<>();
+        List<Double> expectedWaits = new ArrayList<>();
+        new LibrarySimulator(3).simulate(scenario, new LibrarySimulator.Listener() {
+            @Override
+            public void arrived(double time, int participant, boolean writer) {
+                arrivals.add(writer);
+            }
+
+            @Override
+            public void admitted(double time, int participant, boolean writer) {
+                expectedOrder.add(writer);
+                expectedWaits.add(time);
+            }
+        });
+
+        Library library = quietLibrary();
+        List<Boolean> order = Collections.synchronizedList(new ArrayList<>());
+        List<Double> waits = Collections.synchronizedList(new ArrayList<>());
+        LongAdder finished = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        long begin = System.nanoTime();
+        for (boolean writer : arrivals) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                try {
+                    if (writer) {
+                        library.startWriting();
+                    } else {
+                        library.startReading();
+                    }
+                    order.add(writer);
+                    waits.add((System.nanoTime() - begin) / 1e6);
+                    Thread.sleep(hold);
+                    if (writer) {
+                        library.stopWriting();
+                    } else {
+                        library.stopReading();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    finished.increment();
+                }
+            }));
+            int arrived = threads.size();
+            while (library.getActiveUsersCount() + library.getWaitingQueueCount() + finished.sum() < arrived) {
+                Thread.onSpinWait();
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(expectedOrder, order);
+        for (int i = 0; i < expectedWaits.size(); i++) {
+            assertEquals(expectedWaits.get(i), waits.get(i), hold / 4.0, "admission " + i + " at " + waits);
+        }
+    }
+
+    private static Library quietLibrary() {
+        Library library = new Library();
+        library.setDetailedState(false);
+        return library;
+    }
+
+    private static void assertConforms(int writers, int readers, int sleepTime) throws InterruptedException {
+        int durationMillis = 1000;
+        Map<Integer, Double> arrivals = new HashMap<>();
+        List<Double> expectedWaits = new ArrayList<>();
+        LibrarySimulator.Result expected = new LibrarySimulator(1).simulate(
+                LibrarySimulator.Scenario.of(writers, readers, sleepTime, durationMillis),
+                new LibrarySimulator.Listener() {
+                    @Override
+                    public void arrived(double time, int participant, boolean writer) {
+                        arrivals.put(participant, time);
+                    }
+
+                    @Override
+                    public void admitted(double time, int participant, boolean writer) {
+                        expectedWaits.add(time - arrivals.get(participant));
+                    }
+                });
+        double expectedMeanWait = expectedWaits.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+
+        LongAdder reads = new LongAdder();
+        LongAdder writes = new LongAdder();
+        Map<Thread, LongAdder> completed = new ConcurrentHashMap<>();
+        List<Double> waits = Collections.synchronizedList(new ArrayList<>());
+        Library library = new Library() {
+            @Override
+            public void startReading() throws InterruptedException {
+                long begin = System.nanoTime();
+                super.startReading();
+                waits.add((System.nanoTime() - begin) / 1e6);
+            }
+
+            @Override
+            public void startWriting() throws InterruptedException {
+                long begin = System.nanoTime();
+                super.startWriting();
+                waits.add((System.nanoTime() - begin) / 1e6);
+            }
+
+            @Override
+            public void stopReading() {
+                super.stopReading();
+                reads.increment();
+                completed.computeIfAbsent(Thread.currentThread(), thread -> new LongAdder()).increment();
+            }
+
+            @Override
+            public void stopWriting() {
+                super.stopWriting();
+                writes.increment();
+                completed.computeIfAbsent(Thread.currentThread(), thread -> new LongAdder()).increment();
+            }
+        };
+        library.setDetailedState(false);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            threads.add(Thread.ofVirtual().start(new Writer(library, sleepTime)));
+        }
+        for (int i = 0; i < readers; i++) {
+            threads.add(Thread.ofVirtual().start(new Reader(library, sleepTime)));
+        }
+        Thread.sleep(durationMillis);
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        double meanWait;
+        synchronized (waits) {
+            meanWait = waits.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        }
+        String message = "simulated " + expected + " with mean wait " + expectedMeanWait + " but measured "
+                + reads.sum() + " reads, " + writes.sum() + " writes and mean wait " + meanWait;
+        assertEquals(expected.completedReads(), reads.sum(), expected.completedReads() * 0.25, message);
+        assertEquals(expected.completedWrites(), writes.sum(), expected.completedWrites() * 0.25, message);
+        assertEquals(expected.starved(), writers + readers - completed.size(), message);
+        assertEquals(expectedMeanWait, meanWait, Math.max(expectedMeanWait * 0.25, sleepTime / 4.0), message);
+    }
+}
@@ -8,14 +8,21 @@ import org.junit.jupiter.api.Timeout;
 import ch.qos.logback.classic.Logger;
 import org.slf4j.LoggerFactory;
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
 import ch.qos.logback.core.read.ListAppender;
 
 import static org.mockito.Mockito.*;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.awaitility.Awaitility.await;
@@ -361,4 +368,517 @@ class LibraryTest {
         assertTrue(true);
     }
 
+
+    /**
+     * Scale mode launches, runs and shuts down many participants
+     */
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    void testRunAtScale() {
+        Library.ScaleReport report = library.runAtScale(100, 20_000, 1, 500);
+
+        assertEquals(20_100, report.participants());
+        assertTrue(report.completedOperations() > 0);
+        assertTrue(report.bytesPerParticipant() > 0);
+        assertTrue(library.isDetailedState());
+        assertTrue(report.startupMillis() >= 0);
+        assertTrue(report.shutdownMillis() >= 0);
+        assertEquals(0, library.getActiveUsersCount());
+        assertEquals(0, library.getWaitingQueueCount());
+        assertTrue(library.getWaitingQueue().isEmpty());
+    }
+
+    /**
+     * Interrupting a scale run ends it early with the library drained rather
+     * than its waiters interrupted, the detailed state restored and the
+     * interrupt preserved
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testRunAtScaleInterrupted() throws InterruptedException {
+        LongAdder interruptedWaiters = new LongAdder();
+        Library counting = new Library() {
+            @Override
+            public void startReading(int weight) throws InterruptedException {
+                try {
+                    super.startReading(weight);
+                } catch (InterruptedException e) {
+                    interruptedWaiters.increment();
+                    throw e;
+                }
+            }
+        };
+        AtomicBoolean interruptedAfterRun = new AtomicBoolean();
+        AtomicReference<Library.ScaleReport> report = new AtomicReference<>();
+        Thread runner = Thread.ofPlatform().start(() -> {
+            report.set(counting.runAtScale(10, 1_000, 1, 60_000));
+            interruptedAfterRun.set(Thread.currentThread().isInterrupted());
+        });
+        await().atMost(5, TimeUnit.SECONDS).until(() -> counting.snapshot().activeReaders() > 0);
+        runner.interrupt();
+        runner.join();
+
+        Library.Snapshot snapshot = counting.snapshot();
+        assertTrue(interruptedAfterRun.get());
+        assertEquals(0, interruptedWaiters.sum());
+        assertEquals(1_010, report.get().participants());
+        assertTrue(counting.isDetailedState());
+        assertEquals(Library.DEFAULT_CAPACITY, counting.getSemaphore().availablePermits());
+        assertEquals(0, snapshot.activeReaders() + snapshot.activeWriters() + snapshot.queueDepth());
+    }
+
+    /**
+     * Interrupted waiting thread leaves the waiting queue
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    void testInterruptedWaitingLeavesQueue() throws InterruptedException {
+        library.startWriting();
+        Thread reader = Thread.ofVirtual().start(() -> {
+            try {
+                library.startReading();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        await().atMost(1, TimeUnit.SECONDS)
+                .until(() -> library.getWaitingQueueCount() == 1);
+        reader.interrupt();
+        reader.join();
+
+        assertEquals(0, library.getWaitingQueueCount());
+        assertTrue(library.getWaitingQueue().isEmpty());
+        library.stopWriting();
+    }
+
+    /**
+     * Tests scale mode in main
+     */
+    @Test
+    void testMainScaleMode() {
+        Logger logger = (Logger) LoggerFactory.getLogger(Library.class);
+        ListAppender<ILoggingEvent> listAppender = new ListAppender<>();
+        listAppender.start();
+        logger.addAppender(listAppender);
+
+        Library.main(new String[]{"--scale", "1", "10", "1", "100"});
+        Library.main(new String[]{"--scale", "1"});
+
+        assertTrue(listAppender.list.stream()
+                .anyMatch(event -> event.getFormattedMessage().startsWith("ScaleReport")));
+        assertTrue(listAppender.list.stream()
+                .anyMatch(event -> event.getMessage().contains("Scale mode arguments must be exactly 4 integers")));
+
+        logger.detachAppender(listAppender);
+    }
+
+    /**
+     * Snapshot does not wait for a status printout in progress
+     *
+     * @throws Exception
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void testSnapshotDoesNotWaitForLogging() throws Exception {
+        Logger logger = (Logger) LoggerFactory.getLogger(Library.class);
+        Level oldLevel = logger.getLevel();
+        CountDownLatch logging = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AppenderBase<ILoggingEvent> blockingAppender = new AppenderBase<>() {
+            @Override
+            protected void append(ILoggingEvent event) {
+                logging.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        blockingAppender.start();
+        logger.setLevel(Level.INFO);
+        logger.addAppender(blockingAppender);
+        try {
+            Thread reader = Thread.ofVirtual().start(() -> {
+                try {
+                    library.startReading();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            logging.await();
+
+            Library.Snapshot snapshot = executor.submit(library::snapshot).get(1, TimeUnit.SECONDS);
+            assertEquals(1, snapshot.waitingReaders());
+
+            release.countDown();
+            reader.join();
+        } finally {
+            release.countDown();
+            logger.detachAppender(blockingAppender);
+            logger.setLevel(oldLevel);
+        }
+    }
+
+    /**
+     * Snapshot reflects counters and advances its epoch on every change
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    void testSnapshotEpochAdvances() throws InterruptedException {
+        Library.Snapshot initial = library.snapshot();
+        assertEquals(new Library.Snapshot(0, 0, 0, 0, 0, 0), initial);
+
+        library.startReading();
+        Library.Snapshot reading = library.snapshot();
+
+        assertEquals(1, reading.activeReaders());
+        assertEquals(0, reading.queueDepth());
+        assertEquals(2, reading.epoch());
+
+        library.stopReading();
+        assertEquals(3, library.snapshot().epoch());
+    }
+
+    /**
+     * Snapshots polled without the lock never show a torn state
+     */
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testSnapshotIsConsistentUnderLoad() {
+        Logger logger = (Logger) LoggerFactory.getLogger(Library.class);
+        Level oldLevel = logger.getLevel();
+        try {
+            logger.setLevel(Level.WARN);
+            for (int i = 0; i < 8; i++) {
+                boolean writer = i % 4 == 0;
+                executor.submit(() -> {
+                    try {
+                        while (!Thread.currentThread().isInterrupted()) {
+                            if (writer) {
+                                library.startWriting();
+                                library.stopWriting();
+                            } else {
+                                library.startReading();
+                                library.stopReading();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+
+            long previousEpoch = -1;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+            while (System.nanoTime() < deadline) {
+                Library.Snapshot snapshot = library.snapshot();
+                assertTrue(snapshot.activeWriters() <= 1, snapshot::toString);
+                assertTrue(snapshot.activeReaders() <= Library.DEFAULT_CAPACITY, snapshot::toString);
+                assertFalse(snapshot.activeWriters() == 1 && snapshot.activeReaders() > 0, snapshot::toString);
+                assertEquals(snapshot.waitingReaders() + snapshot.waitingWriters(), snapshot.queueDepth());
+                assertTrue(snapshot.epoch() >= previousEpoch);
+                previousEpoch = snapshot.epoch();
+            }
+            assertTrue(previousEpoch > 0);
+        } finally {
+            executor.shutdownNow();
+            logger.setLevel(oldLevel);
+        }
+    }
+
+    /**
+     * Run works on platform threads with named tasks
+     */
+    @Test
+    void testRunWithPlatformStrategy() {
+        Library librarySpy = spy(new Library());
+
+        executor.submit(() -> librarySpy.run(1, 2, 10, ExecutionStrategy.PLATFORM.newExecutor()));
+
+        await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> {
+            verify(librarySpy, atLeast(1)).startReading();
+            verify(librarySpy, atLeast(1)).startWriting();
+        });
+    }
+
+    /**
+     * A pool with fewer threads than participants still serves every
+     * participant, and its threads get their names back
+     */
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testBoundedStrategyRunsEveryParticipant() {
+        Set<String> participants = ConcurrentHashMap.newKeySet();
+        Set<Thread> carriers = ConcurrentHashMap.newKeySet();
+        Library recording = new Library() {
+            @Override
+            public void startReading(int weight) throws InterruptedException {
+                participants.add(Thread.currentThread().getName());
+                carriers.add(Thread.currentThread());
+                super.startReading(weight);
+            }
+
+            @Override
+            public void startWriting() throws InterruptedException {
+                participants.add(Thread.currentThread().getName());
+                carriers.add(Thread.currentThread());
+                super.startWriting();
+            }
+        };
+        recording.setDetailedState(false);
+        int participantCount = Runtime.getRuntime().availableProcessors() + 3;
+
+        Future<?> run = executor.submit(() -> recording.run(1, participantCount - 1, 1, ExecutionStrategy.FORK_JOIN));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> participants.size() == participantCount);
+        assertTrue(participants.contains("WRITER 1"));
+        run.cancel(true);
+        await().atMost(2, TimeUnit.SECONDS).until(() -> carriers.stream()
+                .noneMatch(thread -> thread.getName().startsWith("READER") || thread.getName().startsWith("WRITER")));
+    }
+
+    /**
+     * Tests unknown execution strategy in main
+     */
+    @Test
+    void testMainWithUnknownStrategy() {
+        Logger logger = (Logger) LoggerFactory.getLogger(Library.class);
+        ListAppender<ILoggingEvent> listAppender = new ListAppender<>();
+        listAppender.start();
+        logger.addAppender(listAppender);
+
+        Library.main(new String[]{"1", "1", "10", "green"});
+
+        assertTrue(listAppender.list.stream()
+                .anyMatch(event -> event.getMessage().contains("Unknown execution strategy")));
+
+        logger.detachAppender(listAppender);
+    }
+
+    /**
+     * A failing participant stops the whole run instead of leaving the
+     * others running
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void testRunStopsWhenParticipantFails() throws InterruptedException {
+        Library failing = new Library() {
+            @Override
+            public void startWriting() {
+                throw new IllegalStateException("writer failed");
+            }
+        };
+        failing.setDetailedState(false);
+        ExecutorService runExecutor = ExecutionStrategy.VIRTUAL.newExecutor();
+
+        failing.run(1, 3, 10, runExecutor);
+
+        assertTrue(runExecutor.awaitTermination(2, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Weighted readers consume capacity units instead of head count
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void testWeightedReadersShareCapacity() throws InterruptedException {
+        library.startReading(3);
+        library.startReading(2);
+        assertEquals(0, library.getSemaphore().availablePermits());
+
+        executor.submit(() -> {
+            try {
+                library.startReading(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        await().atMost(1, TimeUnit.SECONDS)
+                .until(() -> library.getWaitingQueueCount() == 1);
+
+        library.stopReading(2);
+
+        await().atMost(1, TimeUnit.SECONDS)
+                .until(() -> library.snapshot().activeReaders() == 2);
+        assertEquals(1, library.getSemaphore().availablePermits());
+    }
+
+    /**
+     * With the bypass disabled a light reader arriving after a queued heavy
+     * reader does not overtake it
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void testHeavyReaderIsNotOvertaken() throws InterruptedException {
+        library.setReaderBypass(0);
+        library.startReading(4);
+        CountDownLatch heavyEntered = new CountDownLatch(1);
+        CountDownLatch lightEntered = new CountDownLatch(1);
+
+        executor.submit(() -> {
+            try {
+                library.startReading(3);
+                heavyEntered.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        await().atMost(1, TimeUnit.SECONDS)
+                .until(() -> library.getWaitingQueueCount() == 1);
+        executor.submit(() -> {
+            try {
+                library.startReading(1);
+                lightEntered.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        await().atMost(1, TimeUnit.SECONDS)
+                .until(() -> library.getWaitingQueueCount() == 2);
+
+        assertEquals(1, library.getSemaphore().availablePermits());
+        assertFalse(lightEntered.await(200, TimeUnit.MILLISECONDS));
+
+        library.stopReading(4);
+
+        assertTrue(heavyEntered.await(1, TimeUnit.SECONDS));
+        assertTrue(lightEntered.await(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Light readers bypass a queued heavy reader at most the configured number
+     * of times; the next one queues behind it and the heavy reader enters first
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void testLightReadersBypassHeavyReaderBoundedly() throws InterruptedException {
+        library.setReaderBypass(2);
+        library.startReading(1);
+        CountDownLatch heavyEntered = new CountDownLatch(1);
+        CountDownLatch lightEntered = new CountDownLatch(3);
+
+        executor.submit(() -> {
+            try {
+                library.startReading(Library.DEFAULT_CAPACITY);
+                heavyEntered.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        await().atMost(1, TimeUnit.SECONDS)
+                .until(() -> library.getWaitingQueueCount() == 1);
+        for (int i = 0; i < 3; i++) {
+            executor.submit(() -> {
+                try {
+                    library.startReading(1);
+                    lightEntered.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        await().atMost(1, TimeUnit.SECONDS)
+                .until(() -> lightEntered.getCount() == 1 && library.getWaitingQueueCount() == 2);
+
+        assertEquals(3, library.snapshot().activeReaders());
+        assertEquals(2, library.getSemaphore().availablePermits());
+        assertFalse(lightEntered.await(200, TimeUnit.MILLISECONDS));
+
+        for (int i = 0; i < 3; i++) {
+            library.stopReading(1);
+        }
+
+        assertTrue(heavyEntered.await(1, TimeUnit.SECONDS));
+        assertEquals(1, lightEntered.getCount());
+        library.stopReading(Library.DEFAULT_CAPACITY);
+        assertTrue(lightEntered.await(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * A waiting writer turns the bypass off, so light readers queue behind it
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void testNoBypassWhileWriterWaits() throws InterruptedException {
+        library.startReading(1);
+        CountDownLatch lightEntered = new CountDownLatch(1);
+
+        executor.submit(() -> {
+            try {
+                library.startReading(Library.DEFAULT_CAPACITY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        await().atMost(1, TimeUnit.SECONDS)
+                .until(() -> library.getWaitingQueueCount() == 1);
+        executor.submit(() -> {
+            try {
+                library.startWriting();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        await().atMost(1, TimeUnit.SECONDS)
+                .until(() -> library.getWaitingQueueCount() == 2);
+        executor.submit(() -> {
+            try {
+                library.startReading(1);
+                lightEntered.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        await().atMost(1, TimeUnit.SECONDS)
+                .until(() -> library.getWaitingQueueCount() == 3);
+
+        assertFalse(lightEntered.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, library.snapshot().activeReaders());
+    }
+
+    /**
+     * Weights outside of the capacity and invalid capacities are rejected
+     */
+    @Test
+    void testInvalidWeightAndCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> library.startReading(0));
+        assertThrows(IllegalArgumentException.class, () -> library.startReading(Library.DEFAULT_CAPACITY + 1));
+        assertThrows(IllegalArgumentException.class, () -> library.stopReading(-1));
+        assertThrows(IllegalArgumentException.class, () -> new Library(0));
+        assertThrows(IllegalArgumentException.class, () -> library.setReaderBypass(-1));
+        assertEquals(0, library.getWaitingQueueCount());
+    }
+
+    /**
+     * Writer takes the whole custom capacity
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    void testWriterTakesCustomCapacity() throws InterruptedException {
+        Library large = new Library(20);
+
+        large.startWriting();
+        assertEquals(0, large.getSemaphore().availablePermits());
+        large.stopWriting();
+
+        assertEquals(20, large.getSemaphore().availablePermits());
+    }
+
 }
\ No newline at end of file
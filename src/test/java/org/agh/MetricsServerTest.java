@@ -0,0 +1,141 @@
+package org.agh;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link MetricsServer} class run on the loopback interface.
+ */
+class MetricsServerTest {
+    private Library library;
+    private MetricsServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        library = new Library();
+        library.setDetailedState(false);
+        LibraryMetrics metrics = new LibraryMetrics();
+        library.setMetrics(metrics);
+        server = new MetricsServer(library, metrics, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    private HttpResponse<String> scrape(String method) throws IOException, InterruptedException {
+        URI uri = URI.create("http://127.0.0.1:" + server.getPort() + "/metrics");
+        HttpRequest request = HttpRequest.newBuilder(uri).method(method, HttpRequest.BodyPublishers.noBody()).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * A scrape reports the threads inside and the finished acquisitions
+     *
+     * @throws Exception
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void scrapeReportsCountersInPrometheusFormat() throws Exception {
+        library.startWriting();
+        library.stopWriting();
+        library.startReading();
+        library.startReading();
+
+        HttpResponse<String> response = scrape("GET");
+        library.stopReading();
+        library.stopReading();
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElseThrow().startsWith("text/plain; version=0.0.4"));
+        String body = response.body();
+        assertTrue(body.contains("# TYPE library_active gauge\n"));
+        assertTrue(body.contains("library_active{role=\"reader\"} 2\n"));
+        assertTrue(body.contains("library_active{role=\"writer\"} 0\n"));
+        assertTrue(body.contains("library_waiting{role=\"writer\"} 0\n"));
+        assertTrue(body.contains("library_acquisitions_total{role=\"reader\"} 2\n"));
+        assertTrue(body.contains("library_acquisitions_total{role=\"writer\"} 1\n"));
+        assertTrue(body.contains("library_hold_seconds_bucket{role=\"writer\",le=\"+Inf\"} 1\n"));
+        assertTrue(body.contains("library_hold_seconds_count{role=\"reader\"} 0\n"));
+        assertTrue(body.contains("library_wait_seconds_count{role=\"reader\"} 2\n"));
+        assertTrue(body.contains("library_wait_seconds_bucket{role=\"reader\",le=\"0.0001\"} "));
+        assertTrue(body.matches("(?s).*library_wait_seconds_sum\\{role=\"reader\"} \\d+\\.\\d{9}\n.*"));
+    }
+
+    /**
+     * Bucket counts are cumulative and end with the total count
+     *
+     * @throws Exception
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void histogramBucketsAreCumulative() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            library.startReading();
+            library.stopReading();
+        }
+
+        long previous = 0;
+        for (String line : scrape("GET").body().split("\n")) {
+            if (line.startsWith("library_hold_seconds_bucket{role=\"reader\"")) {
+                long value = Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+                assertTrue(value >= previous);
+                previous = value;
+            }
+        }
+        assertEquals(3, previous);
+    }
+
+    /**
+     * Only GET is served
+     *
+     * @throws Exception
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void otherMethodsAreRejected() throws Exception {
+        assertEquals(405, scrape("POST").statusCode());
+    }
+
+    /**
+     * Rendering reuses its buffer and does not allocate text per scrape
+     */
+    @Test
+    void renderingDoesNotAllocatePerScrape() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < 20_000; i++) {
+            server.render();
+        }
+        byte[] buffer = server.buffer();
+        int renders = 10_000;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < renders; i++) {
+            server.render();
+        }
+        long perRender = (threads.getCurrentThreadAllocatedBytes() - before) / renders;
+
+        assertSame(buffer, server.buffer());
+        assertTrue(perRender < 128, "Allocated " + perRender + " bytes per render");
+        assertTrue(new String(buffer, 0, server.render(), StandardCharsets.US_ASCII).endsWith("\n"));
+    }
+}
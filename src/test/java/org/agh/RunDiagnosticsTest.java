@@ -0,0 +1,57 @@
+package org.agh;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link RunDiagnostics} class.
+ */
+class RunDiagnosticsTest {
+
+    /**
+     * Parks and pinned parks of virtual threads are counted
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    void parksAndPinningAreCounted() throws InterruptedException {
+        Library library = new Library();
+        Object monitor = new Object();
+        RunDiagnostics diagnostics = new RunDiagnostics(library);
+
+        for (int i = 0; i < 5; i++) {
+            Thread thread = Thread.ofVirtual().start(() -> {
+                LockSupport.parkNanos(1_000_000);
+                synchronized (monitor) {
+                    LockSupport.parkNanos(1_000_000);
+                }
+            });
+            thread.join();
+        }
+        library.startReading();
+        library.stopReading();
+        diagnostics.close();
+
+        RunDiagnostics.Report report = diagnostics.report();
+        assertTrue(report.virtualParks() > 0, report::toString);
+        assertTrue(report.pinnedEvents() >= 5, report::toString);
+        assertTrue(report.pinnedTime().toNanos() > 0, report::toString);
+        assertEquals(3, report.stateChanges());
+        assertTrue(report.stateChangesPerCore() > 0);
+    }
+
+    /**
+     * Closing twice is harmless
+     */
+    @Test
+    void closeIsIdempotent() {
+        RunDiagnostics diagnostics = new RunDiagnostics(new Library());
+
+        diagnostics.close();
+
+        assertDoesNotThrow(diagnostics::close);
+    }
+}
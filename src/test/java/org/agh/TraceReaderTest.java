@@ -0,0 +1,80 @@
+package org.agh;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link TraceReader} class.
+ */
+class TraceReaderTest {
+
+    @TempDir
+    Path directory;
+
+    private static final List<TraceReader.TraceEvent> EVENTS = List.of(
+            new TraceReader.TraceEvent(1_000, 0, TraceRecorder.WRITER, TraceRecorder.WAIT, 1),
+            new TraceReader.TraceEvent(3_000, 0, TraceRecorder.WRITER, TraceRecorder.ENTER, 0),
+            new TraceReader.TraceEvent(4_000, 1, TraceRecorder.READER, TraceRecorder.WAIT, 1),
+            new TraceReader.TraceEvent(9_000, 0, TraceRecorder.WRITER, TraceRecorder.LEAVE, 1),
+            new TraceReader.TraceEvent(9_500, 1, TraceRecorder.READER, TraceRecorder.ENTER, 0));
+
+    /**
+     * Events of each thread are paired into waiting and inside intervals
+     */
+    @Test
+    void eventsArePairedIntoIntervals() {
+        List<TraceReader.Interval> intervals = TraceReader.intervals(EVENTS);
+
+        assertEquals(3, intervals.size());
+        assertEquals(new TraceReader.Interval(0, TraceRecorder.WRITER, true, 1_000, 2_000), intervals.get(0));
+        assertEquals(new TraceReader.Interval(0, TraceRecorder.WRITER, false, 3_000, 6_000), intervals.get(1));
+        assertEquals(new TraceReader.Interval(1, TraceRecorder.READER, true, 4_000, 5_500), intervals.get(2));
+    }
+
+    /**
+     * Latency report contains a line per role and phase
+     */
+    @Test
+    void latencyReportListsEveryPhase() {
+        String report = TraceReader.latencyReport(EVENTS);
+
+        assertEquals(5, report.lines().count());
+        assertTrue(report.lines().anyMatch(line -> line.startsWith("WRITER  INSIDE")));
+    }
+
+    /**
+     * Chrome trace contains complete events and queue counters
+     *
+     * @throws IOException
+     */
+    @Test
+    void chromeTraceIsWritten() throws IOException {
+        Path output = directory.resolve("trace.json");
+
+        TraceReader.writeChromeTrace(EVENTS, output);
+
+        String json = Files.readString(output);
+        assertTrue(json.startsWith("{\"traceEvents\":["));
+        assertTrue(json.contains("\"name\":\"WRITER INSIDE\",\"ph\":\"X\",\"pid\":1,\"tid\":0,\"ts\":2.000,\"dur\":6.000"));
+        assertTrue(json.contains("\"ph\":\"C\""));
+    }
+
+    /**
+     * Files that are not trace segments are rejected
+     *
+     * @throws IOException
+     */
+    @Test
+    void foreignFileIsRejected() throws IOException {
+        Files.write(directory.resolve("trace-000000.bin"), new byte[32]);
+
+        assertThrows(IOException.class, () -> TraceReader.read(directory));
+    }
+}
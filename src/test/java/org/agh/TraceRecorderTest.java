@@ -0,0 +1,203 @@
+package org.agh;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link TraceRecorder} class.
+ */
+class TraceRecorderTest {
+    private static final org.slf4j.Logger logger = LoggerFactory.getLogger(TraceRecorderTest.class);
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Every WAIT, ENTER and LEAVE of the library ends up in the trace
+     *
+     * @throws Exception
+     */
+    @Test
+    void libraryEventsAreRecorded() throws Exception {
+        Library library = new Library();
+        try (TraceRecorder recorder = new TraceRecorder(directory, 1024, 4)) {
+            library.setTraceRecorder(recorder);
+            library.startWriting();
+            library.stopWriting();
+            library.startReading();
+            library.stopReading();
+        }
+
+        List<TraceReader.TraceEvent> events = TraceReader.read(directory);
+
+        assertEquals(6, events.size());
+        assertEquals(TraceRecorder.WRITER, events.get(0).role());
+        assertEquals(TraceRecorder.WAIT, events.get(0).event());
+        assertEquals(1, events.get(0).queueDepth());
+        assertEquals(TraceRecorder.READER, events.get(5).role());
+        assertEquals(TraceRecorder.LEAVE, events.get(5).event());
+    }
+
+    /**
+     * Old segments are deleted when the recorder rolls over
+     *
+     * @throws IOException
+     */
+    @Test
+    void segmentsRollOver() throws IOException {
+        try (TraceRecorder recorder = new TraceRecorder(directory, 64, 2)) {
+            for (int i = 0; i < 64 * 5; i++) {
+                recorder.record(TraceRecorder.READER, TraceRecorder.WAIT, i);
+            }
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+        List<TraceReader.TraceEvent> events = TraceReader.read(directory);
+        assertEquals(128, events.size());
+        assertEquals(64 * 5 - 1, events.getLast().queueDepth());
+    }
+
+    /**
+     * Invalid configuration is rejected
+     */
+    @Test
+    void invalidConfigurationIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new TraceRecorder(directory, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TraceRecorder(directory, 1024, 0));
+    }
+
+    /**
+     * Events of short-lived threads reach the segment while the recorder is
+     * still open, and nothing is dropped
+     *
+     * @throws Exception
+     */
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void shortLivedThreadsAreVisibleBeforeClose() throws Exception {
+        Library library = new Library();
+        library.setDetailedState(false);
+        int threads = 1000;
+        try (TraceRecorder recorder = new TraceRecorder(directory, 1 << 14, 2)) {
+            library.setTraceRecorder(recorder);
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < threads; i++) {
+                    executor.execute(() -> {
+                        try {
+                            library.startReading();
+                            library.stopReading();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    });
+                }
+            }
+
+            await().atMost(2, TimeUnit.SECONDS)
+                    .until(() -> TraceReader.read(directory).size() == threads * 3);
+            assertEquals(0, recorder.getDroppedRecords().sum());
+            assertEquals(threads, TraceReader.read(directory).stream()
+                    .mapToInt(TraceReader.TraceEvent::slot).distinct().count());
+        }
+    }
+
+    /**
+     * Measures the cost of a single recorded event. Bursts stay below the
+     * ring capacity and the writer catches up between them, so no record is
+     * dropped and only publishing is measured.
+     *
+     * @throws IOException
+     */
+    @Test
+    void recordingCostBenchmark() throws IOException {
+        int burst = TraceRecorder.RING_RECORDS / 2;
+        int bursts = 60;
+        long elapsed = 0;
+        try (TraceRecorder recorder = new TraceRecorder(directory, 1 << 22, 2)) {
+            for (int round = 0; round < bursts; round++) {
+                long begin = System.nanoTime();
+                for (int i = 0; i < burst; i++) {
+                    recorder.record(TraceRecorder.WRITER, TraceRecorder.LEAVE, i);
+                }
+                if (round >= bursts / 2) {
+                    elapsed += System.nanoTime() - begin;
+                }
+                await().atMost(2, TimeUnit.SECONDS).pollInterval(10, TimeUnit.MILLISECONDS)
+                        .until(() -> recorder.pendingRecords() == 0);
+            }
+            double perEvent = (double) elapsed / ((long) burst * (bursts / 2));
+            logger.info("Trace recording costs {} ns per event", String.format("%.1f", perEvent));
+            assertEquals(0, recorder.getDroppedRecords().sum());
+        }
+        assertEquals((long) burst * bursts, TraceReader.read(directory).size());
+    }
+
+    /**
+     * Measures the cost of a recorded event with several threads contending
+     * for the head of the ring, without pauses for the writer. Every record
+     * is either in the trace or counted as dropped; the logged drop count
+     * shows whether the writer keeps up with this load. With fewer cores than
+     * threads the per-thread cost includes the time slices of the others.
+     *
+     * @throws Exception
+     */
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    void contendedRecordingBenchmark() throws Exception {
+        int threads = 4;
+        int perThread = 1 << 18;
+        long total = (long) threads * perThread;
+        LongAdder threadNanos = new LongAdder();
+        long dropped;
+        try (TraceRecorder recorder = new TraceRecorder(directory, 1 << 21, 2)) {
+            CyclicBarrier start = new CyclicBarrier(threads + 1);
+            List<Thread> recorders = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                recorders.add(Thread.ofPlatform().start(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException | BrokenBarrierException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    long begin = System.nanoTime();
+                    for (int i = 0; i < perThread; i++) {
+                        recorder.record(TraceRecorder.READER, TraceRecorder.ENTER, i);
+                    }
+                    threadNanos.add(System.nanoTime() - begin);
+                }));
+            }
+            start.await();
+            long begin = System.nanoTime();
+            for (Thread thread : recorders) {
+                thread.join();
+            }
+            long wall = System.nanoTime() - begin;
+            dropped = recorder.getDroppedRecords().sum();
+            logger.info("Trace recording with {} threads costs {} ns per event per thread, {} ns per event overall;"
+                            + " {} of {} records dropped",
+                    threads, String.format("%.1f", (double) threadNanos.sum() / total),
+                    String.format("%.1f", (double) wall / total), dropped, total);
+        }
+        assertEquals(total - dropped, TraceReader.read(directory).size());
+    }
+}
@@ -0,0 +1,218 @@
+package org.agh;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link WriteAheadLog} class.
+ *
+ * <p>
+ * The class also contains a benchmark comparing durable writes per second
+ * with group commit and with an fsync inside every exclusive section.
+ * </p>
+ */
+class WriteAheadLogTest {
+    private static final org.slf4j.Logger logger = LoggerFactory.getLogger(WriteAheadLogTest.class);
+
+    @TempDir
+    Path directory;
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> replay(Path file) throws IOException {
+        List<String> payloads = new ArrayList<>();
+        WriteAheadLog.replay(file, entry -> payloads.add(new String(entry.payload(), StandardCharsets.UTF_8)));
+        return payloads;
+    }
+
+    /**
+     * Durable records are replayed in order and reopening continues the sequence
+     *
+     * @throws Exception
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void durableRecordsAreReplayedInOrder() throws Exception {
+        Path file = directory.resolve("wal.log");
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            log.append(bytes("first"));
+            long sequence = log.append(bytes("second"));
+            log.awaitDurable(sequence);
+            assertEquals(2, sequence);
+            assertEquals(2, log.getDurableSequence());
+        }
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            assertEquals(3, log.append(bytes("third")));
+        }
+
+        List<Long> sequences = new ArrayList<>();
+        assertEquals(3, WriteAheadLog.replay(file, entry -> sequences.add(entry.sequence())));
+        assertEquals(List.of(1L, 2L, 3L), sequences);
+        assertEquals(List.of("first", "second", "third"), replay(file));
+    }
+
+    /**
+     * A record cut off by a crash is dropped and the file is truncated
+     * to the last intact record
+     *
+     * @throws Exception
+     */
+    @Test
+    void tornTailIsTruncated() throws Exception {
+        Path file = directory.resolve("wal.log");
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            log.append(bytes("kept"));
+            log.append(bytes("torn"));
+        }
+        long intact = WriteAheadLog.HEADER_SIZE + 4;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 1);
+        }
+
+        assertEquals(List.of("kept"), replay(file));
+        assertEquals(intact, Files.size(file));
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            assertEquals(2, log.append(bytes("after crash")));
+        }
+        assertEquals(List.of("kept", "after crash"), replay(file));
+    }
+
+    /**
+     * A record with a damaged payload fails its checksum and ends the log
+     *
+     * @throws Exception
+     */
+    @Test
+    void corruptedRecordEndsTheLog() throws Exception {
+        Path file = directory.resolve("wal.log");
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            log.append(bytes("good"));
+            log.append(bytes("bad"));
+            log.append(bytes("lost"));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes("X")), 2L * WriteAheadLog.HEADER_SIZE + 4);
+        }
+
+        assertEquals(List.of("good"), replay(file));
+        assertEquals(WriteAheadLog.HEADER_SIZE + 4, Files.size(file));
+    }
+
+    /**
+     * Every acknowledged write of durable writers is in the log
+     *
+     * @throws Exception
+     */
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void durableWritersPersistEveryWrite() throws Exception {
+        Path file = directory.resolve("wal.log");
+        Library library = new Library();
+        library.setDetailedState(false);
+        long appended;
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            List<Thread> writers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                writers.add(Thread.ofVirtual().name("WRITER " + i).start(new Writer(library, 0, log)));
+            }
+            Thread.sleep(300);
+            for (Thread writer : writers) {
+                writer.interrupt();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            appended = log.getAppendedSequence();
+            assertTrue(log.getForces() > 0);
+        }
+
+        assertTrue(appended > 0);
+        assertEquals(appended, WriteAheadLog.replay(file, entry -> {
+        }));
+        assertTrue(replay(file).stream().allMatch(name -> name.startsWith("WRITER ")));
+    }
+
+    /**
+     * Durable writes per second: group commit, where writers leave the
+     * library before their batch is forced, against an fsync inside every
+     * exclusive section. The rates are only logged, since wall-clock
+     * comparisons depend on the disk; the assertions check that group commit
+     * shares an fsync between writes while the baseline forces every write.
+     *
+     * @throws Exception
+     */
+    @Test
+    @Timeout(value = 120, unit = TimeUnit.SECONDS)
+    void groupCommitBenchmark() throws Exception {
+        int writers = 8;
+        int writesPerWriter = 40;
+        int writes = writers * writesPerWriter;
+        Throughput perWrite = durableWrites(directory.resolve("per-write.log"), writers, writesPerWriter, false);
+        Throughput groupCommit = durableWrites(directory.resolve("group.log"), writers, writesPerWriter, true);
+
+        logger.info("Durable writes per second: fsync per write {} ({} forces), group commit {} ({} forces)",
+                String.format("%.0f", perWrite.writesPerSecond()), perWrite.forces(),
+                String.format("%.0f", groupCommit.writesPerSecond()), groupCommit.forces());
+        assertEquals(writes, perWrite.forces());
+        assertTrue(groupCommit.forces() < writes);
+    }
+
+    /**
+     * Outcome of one benchmark run.
+     *
+     * @param writesPerSecond durable writes per second
+     * @param forces          number of forced batches
+     */
+    private record Throughput(double writesPerSecond, long forces) {
+    }
+
+    private static Throughput durableWrites(Path file, int writers, int writesPerWriter, boolean groupCommit)
+            throws Exception {
+        Library library = new Library();
+        library.setDetailedState(false);
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            List<Thread> threads = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < writers; i++) {
+                threads.add(Thread.ofVirtual().start(() -> {
+                    try {
+                        for (int j = 0; j < writesPerWriter; j++) {
+                            library.startWriting();
+                            long sequence = log.append(bytes("record"));
+                            if (!groupCommit) {
+                                log.awaitDurable(sequence);
+                            }
+                            library.stopWriting();
+                            log.awaitDurable(sequence);
+                        }
+                    } catch (IOException | InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            long elapsed = System.nanoTime() - start;
+            assertEquals((long) writers * writesPerWriter, log.getDurableSequence());
+            return new Throughput(writers * writesPerWriter * 1e9 / elapsed, log.getForces());
+        }
+    }
+}